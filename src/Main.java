@@ -1,5 +1,8 @@
 import database.Catalog;
 import database.Database;
+import database.LogRecovery;
+import database.PageBuffer;
+import database.ReplacementPolicy;
 import queryProcessor.CLI;
 
 import java.io.File;
@@ -7,9 +10,42 @@ import java.io.IOException;
 
 public class Main {
 
+    // pages mapped at once in mmap storage mode
+    private static final int MAPPED_REGION_PAGES = 256;
+
+    // fraction of the buffer the background flusher lets be dirty when no ratio is given
+    private static final double DEFAULT_DIRTY_RATIO = 0.25;
+
+    // commits that may wait for the write ahead log to be forced when no group size is given
+    private static final int DEFAULT_GROUP_COMMIT = 16;
+
+    // longest a commit waits for the write ahead log to be forced when no delay is given
+    private static final long DEFAULT_GROUP_DELAY_MILLIS = 10;
+
+    // seconds between checkpoints when no interval is given
+    private static final long DEFAULT_CHECKPOINT_SECONDS = 60;
+
+    // KB of log between checkpoints when no size is given
+    private static final long DEFAULT_CHECKPOINT_KB = 4096;
 
     /**
      * The main driver program
+     * <p>
+     * java Main <db loc> <page size> <buffer size> [<indexing>] [<option>=<value> ...]
+     * <p>
+     * options:
+     * policy=lru|clock|2q|lru-k    buffer replacement policy, lru by default
+     * storage=channel|mmap         how table files are accessed, mmap maps them into memory, channel by default
+     * decode=lazy|eager            decode record values as they are used or whole pages when read, lazy by default
+     * flusher=on|off               write dirty pages in a background thread before they are evicted, off by default
+     * dirty=<ratio>                fraction of the buffer the flusher lets be dirty, 0.25 by default
+     * readahead=<pages>            pages read in the background ahead of a scan, 0 (off) by default
+     * wal=on|off                   log every statement so a crash loses at most the last group commit, on by default
+     * groupcommit=<commits>        commits forced to the log together, 16 by default, 1 forces every commit
+     * groupdelay=<ms>              longest a commit waits for the log to be forced, 10 by default
+     * checkpoint=<seconds>         time between checkpoints of the log, 60 by default, 0 for no time limit
+     * checkpointsize=<KB>          log written between checkpoints, 4096 by default, 0 for no size limit,
+     *                              checkpoints are off when both are 0
      *
      * @param args cmd line args
      * @throws IOException
@@ -21,22 +57,150 @@ public class Main {
         Integer bufferSize = Integer.parseInt(args[2]);
 
         boolean indexflag = false;
+        String policyName = "lru";
+        boolean memoryMapped = false;
+        boolean lazyDecoding = true;
+        boolean flusher = false;
+        double dirtyRatio = DEFAULT_DIRTY_RATIO;
+        int readAheadWindow = 0;
+        boolean wal = true;
+        int groupCommit = DEFAULT_GROUP_COMMIT;
+        long groupDelayMillis = DEFAULT_GROUP_DELAY_MILLIS;
+        long checkpointSeconds = DEFAULT_CHECKPOINT_SECONDS;
+        long checkpointKB = DEFAULT_CHECKPOINT_KB;
+        for (int i = 3; i < args.length; i++) {
+            String[] option = args[i].split("=", 2);
+            if (option.length == 1) { // indexing flag
+                indexflag = args[i].equalsIgnoreCase("true");
+                continue;
+            }
+            switch (option[0].toLowerCase()) {
+                case "policy":
+                    policyName = option[1];
+                    break;
+                case "storage":
+                    if (!option[1].equalsIgnoreCase("mmap") && !option[1].equalsIgnoreCase("channel")) {
+                        System.err.println(String.format("STORAGE %s IS NOT CHANNEL OR MMAP", option[1]));
+                        return;
+                    }
+                    memoryMapped = option[1].equalsIgnoreCase("mmap");
+                    break;
+                case "decode":
+                    if (!option[1].equalsIgnoreCase("lazy") && !option[1].equalsIgnoreCase("eager")) {
+                        System.err.println(String.format("DECODING %s IS NOT LAZY OR EAGER", option[1]));
+                        return;
+                    }
+                    lazyDecoding = option[1].equalsIgnoreCase("lazy");
+                    break;
+                case "flusher":
+                    if (!option[1].equalsIgnoreCase("on") && !option[1].equalsIgnoreCase("off")) {
+                        System.err.println(String.format("FLUSHER %s IS NOT ON OR OFF", option[1]));
+                        return;
+                    }
+                    flusher = option[1].equalsIgnoreCase("on");
+                    break;
+                case "dirty":
+                    try {
+                        dirtyRatio = Double.parseDouble(option[1]);
+                    } catch (NumberFormatException e) {
+                        System.err.println(String.format("DIRTY RATIO %s IS NOT A NUMBER", option[1]));
+                        return;
+                    }
+                    if (dirtyRatio < 0 || dirtyRatio > 1) {
+                        System.err.println(String.format("DIRTY RATIO %s IS NOT BETWEEN 0 AND 1", option[1]));
+                        return;
+                    }
+                    break;
+                case "readahead":
+                    try {
+                        readAheadWindow = Integer.parseInt(option[1]);
+                    } catch (NumberFormatException e) {
+                        System.err.println(String.format("READ AHEAD WINDOW %s IS NOT A NUMBER OF PAGES", option[1]));
+                        return;
+                    }
+                    break;
+                case "wal":
+                    if (!option[1].equalsIgnoreCase("on") && !option[1].equalsIgnoreCase("off")) {
+                        System.err.println(String.format("WRITE AHEAD LOG %s IS NOT ON OR OFF", option[1]));
+                        return;
+                    }
+                    wal = option[1].equalsIgnoreCase("on");
+                    break;
+                case "groupcommit":
+                    try {
+                        groupCommit = Integer.parseInt(option[1]);
+                    } catch (NumberFormatException e) {
+                        System.err.println(String.format("GROUP COMMIT %s IS NOT A NUMBER OF COMMITS", option[1]));
+                        return;
+                    }
+                    if (groupCommit < 1) {
+                        System.err.println(String.format("GROUP COMMIT %s IS LESS THAN 1 COMMIT", option[1]));
+                        return;
+                    }
+                    break;
+                case "groupdelay":
+                    try {
+                        groupDelayMillis = Long.parseLong(option[1]);
+                    } catch (NumberFormatException e) {
+                        System.err.println(String.format("GROUP COMMIT DELAY %s IS NOT A NUMBER OF MILLISECONDS", option[1]));
+                        return;
+                    }
+                    if (groupDelayMillis < 0) {
+                        System.err.println(String.format("GROUP COMMIT DELAY %s IS NEGATIVE", option[1]));
+                        return;
+                    }
+                    break;
+                case "checkpoint":
+                    try {
+                        checkpointSeconds = Long.parseLong(option[1]);
+                    } catch (NumberFormatException e) {
+                        System.err.println(String.format("CHECKPOINT INTERVAL %s IS NOT A NUMBER OF SECONDS", option[1]));
+                        return;
+                    }
+                    if (checkpointSeconds < 0) {
+                        System.err.println(String.format("CHECKPOINT INTERVAL %s IS NEGATIVE", option[1]));
+                        return;
+                    }
+                    break;
+                case "checkpointsize":
+                    try {
+                        checkpointKB = Long.parseLong(option[1]);
+                    } catch (NumberFormatException e) {
+                        System.err.println(String.format("CHECKPOINT LOG SIZE %s IS NOT A NUMBER OF KB", option[1]));
+                        return;
+                    }
+                    if (checkpointKB < 0) {
+                        System.err.println(String.format("CHECKPOINT LOG SIZE %s IS NEGATIVE", option[1]));
+                        return;
+                    }
+                    break;
+                default:
+                    System.out.println(String.format("Ignoring unknown option %s", option[0]));
+            }
+        }
+
+        ReplacementPolicy policy;
+        try {
+            policy = ReplacementPolicy.forName(policyName, bufferSize);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            return;
+        }
+
         Database database;
         System.out.println(String.format("Looking at %s for existing db....", dbLoc));
+        // the database was not shut down cleanly if its log holds statements
+        int recovered = LogRecovery.recover(dbLoc);
+        if (recovered > 0) {
+            System.out.println(String.format("Recovered %d logged statements", recovered));
+        }
         boolean databaseExists = checkDatabaseExists(dbLoc);
         Catalog catalog = new Catalog(dbLoc, pageSize);
-        if(args.length != 4){
-            System.out.println("Indexing OFF\n");
+        if(indexflag){
+            System.out.println("Indexing ON\n");
         }
         else{
-            boolean indexon = args[3].equalsIgnoreCase("true");
-            if(indexon){
-                System.out.println("Indexing ON\n");
-                indexflag = true;
-            }
-            else{
-                System.out.println("Indexing OFF\n");
-            }
+            System.out.println("Indexing OFF\n");
         }
         if (databaseExists) {
             System.out.println("Database found...\n" +
@@ -54,6 +218,7 @@ public class Main {
             // TODO: put restored tables in restoreDatabase function
 
             database = new Database(dbLoc, oldPageSize, bufferSize, catalog, indexflag);
+            configureBuffer(database, policy, memoryMapped, lazyDecoding);
             database.restoreDatabase(catalog);
 
             System.out.println("Database restarted successfully");
@@ -63,16 +228,49 @@ public class Main {
             System.out.println("No existing db found");
             System.out.println(String.format("Creating new db at %s", dbLoc));
             database = new Database(dbLoc, pageSize, bufferSize, indexflag);
+            configureBuffer(database, policy, memoryMapped, lazyDecoding);
             System.out.println("New db created successfully");
             System.out.println(String.format("Page Size: %d", pageSize));
         }
 
         System.out.println(String.format("Buffer Size: %d", bufferSize));
+        System.out.println(String.format("Buffer Policy: %s", policy.getName()));
+        System.out.println(String.format("Storage: %s", memoryMapped ? "mmap" : "channel"));
+        if (flusher) {
+            // started once the tables are restored so it never races the restore
+            database.getBuffer().getBuffer().startFlusher(dirtyRatio);
+            System.out.println(String.format("Flusher: on, dirty ratio %.2f", dirtyRatio));
+        }
+        if (readAheadWindow > 0) {
+            database.getBuffer().getBuffer().startReadAhead(readAheadWindow);
+            System.out.println(String.format("Read ahead: %d pages", readAheadWindow));
+        }
+        if (wal) {
+            database.getBuffer().getBuffer().startLog(groupCommit, groupDelayMillis);
+            System.out.println(String.format("Write ahead log: group commit %d, delay %d ms", groupCommit, groupDelayMillis));
+            if (checkpointSeconds > 0 || checkpointKB > 0) {
+                database.getBuffer().getBuffer().startCheckpoints(checkpointSeconds * 1000, checkpointKB * 1024);
+                System.out.println(String.format("Checkpoints: every %d s or %d KB of log", checkpointSeconds, checkpointKB));
+            }
+        }
 
         CLI cli = new CLI(catalog, database);
         cli.startQueryProcessor();
     }
 
+    /**
+     * applies the startup options to the page buffer before any table file is touched
+     */
+    private static void configureBuffer(Database database, ReplacementPolicy policy, boolean memoryMapped,
+                                        boolean lazyDecoding) {
+        PageBuffer buffer = database.getBuffer().getBuffer();
+        buffer.setReplacementPolicy(policy);
+        buffer.setLazyDecoding(lazyDecoding);
+        if (memoryMapped) {
+            buffer.useMemoryMappedFiles(MAPPED_REGION_PAGES);
+        }
+    }
+
     private static boolean checkDatabaseExists(String filepath) {
             File file = new File(filepath + "\\Catalog");
             return file.exists();
@@ -0,0 +1,73 @@
+package benchmark;
+
+import database.Catalog;
+import database.Page;
+import database.PageBuffer;
+import database.Table;
+
+import java.util.Random;
+
+/**
+ * Measures the latency of buffer hits in PageBuffer.getPage for increasing buffer sizes.
+ * Every page is already buffered so no disk I/O takes place; the time per lookup should
+ * stay flat as the buffer grows.
+ * <p>
+ * run with:
+ * java benchmark.PageBufferBenchmark [lookups]
+ */
+public class PageBufferBenchmark {
+
+    private static final int PAGE_SIZE = 4096;
+
+    private static final int[] BUFFER_SIZES = {16, 256, 4096, 65536};
+
+    public static void main(String[] args) {
+        int lookups = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+
+        System.out.println(String.format("%-12s %-14s", "buffer size", "ns per hit"));
+        for (int bufferSize : BUFFER_SIZES) {
+            double nsPerHit = measureHits(bufferSize, lookups);
+            System.out.println(String.format("%-12d %-14.1f", bufferSize, nsPerHit));
+        }
+    }
+
+    /**
+     * fills a buffer of the given size and times random lookups of pages that are all buffered
+     * @param bufferSize
+     * @param lookups
+     * @return average nanoseconds per lookup
+     */
+    private static double measureHits(int bufferSize, int lookups) {
+        Catalog catalog = new Catalog("bench", PAGE_SIZE);
+        PageBuffer buffer = new PageBuffer(catalog, bufferSize, "bench", PAGE_SIZE);
+        Table table = new Table("bench", 0);
+
+        for (int i = 0; i < bufferSize; i++) {
+            Page page = new Page(PAGE_SIZE, buffer.getRecordFormat());
+            page.setPageID(i);
+            table.getPages().add(i);
+            buffer.addPage(page, table);
+        }
+
+        Random random = new Random(42);
+        int[] pageIDs = new int[lookups];
+        for (int i = 0; i < lookups; i++) {
+            pageIDs[i] = random.nextInt(bufferSize);
+        }
+
+        // warm up so the JIT has compiled the lookup path before timing
+        for (int i = 0; i < lookups; i++) {
+            Page page = buffer.getPage(table, pageIDs[i]);
+            buffer.releasePage(table, page);
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < lookups; i++) {
+            Page page = buffer.getPage(table, pageIDs[i]);
+            buffer.releasePage(table, page);
+        }
+        long elapsed = System.nanoTime() - start;
+
+        return (double) elapsed / lookups;
+    }
+}
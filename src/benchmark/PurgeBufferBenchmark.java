@@ -0,0 +1,87 @@
+package benchmark;
+
+import database.Attribute;
+import database.Catalog;
+import database.Page;
+import database.PageBuffer;
+import database.Record;
+import database.SlottedPage;
+import database.Table;
+import database.TableFileCache;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Measures how long PageBuffer.purgeBuffer takes to write a full buffer of dirty pages to disk.
+ * <p>
+ * run with:
+ * java benchmark.PurgeBufferBenchmark [pages] [rounds]
+ */
+public class PurgeBufferBenchmark {
+
+    private static final int PAGE_SIZE = 4096;
+
+    public static void main(String[] args) throws IOException {
+        int numPages = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        File dir = Files.createTempDirectory("purge-bench").toFile();
+        // table files are named <dbLoc>\<table id>, a location inside the directory keeps them in it
+        String dbLoc = Paths.get(dir.getPath(), "bench").toString();
+
+        Catalog catalog = new Catalog(dbLoc, PAGE_SIZE);
+        int tableID = catalog.createSchema("bench", schema());
+        Table table = new Table("bench", tableID);
+        PageBuffer buffer = new PageBuffer(catalog, numPages, dbLoc, PAGE_SIZE);
+
+        ArrayList<Page> pages = new ArrayList<>(numPages);
+        int key = 0;
+        for (int p = 0; p < numPages; p++) {
+            Page page = new Page(PAGE_SIZE, buffer.getRecordFormat());
+            page.setPageID(p);
+            Record record = row(key);
+            while (SlottedPage.SLOT_SIZE + page.getRecordSize(record) <= page.getFreeBytes()) {
+                page.addRecord(record);
+                record = row(++key);
+            }
+            table.getPages().add(p);
+            buffer.addPage(page, table);
+            pages.add(page);
+        }
+
+        System.out.println(String.format("purging %d pages of %d bytes (%d records)", numPages, PAGE_SIZE, key));
+        for (int round = 1; round <= rounds; round++) {
+            for (Page page : pages) {
+                page.setDirty(true);
+            }
+            long start = System.nanoTime();
+            buffer.purgeBuffer();
+            long elapsed = System.nanoTime() - start;
+            System.out.println(String.format("round %d: %.1f ms", round, elapsed / 1_000_000.0));
+        }
+        buffer.close();
+
+        TableFileCache.deleteFiles(dbLoc, tableID);
+        Files.deleteIfExists(PageBuffer.pageMapPath(dbLoc, tableID));
+        Files.deleteIfExists(PageBuffer.freeSpaceMapPath(dbLoc, tableID));
+        dir.delete();
+    }
+
+    private static ArrayList<Attribute> schema() {
+        ArrayList<Attribute> attributes = new ArrayList<>();
+        attributes.add(new Attribute("id", new ArrayList<>(Arrays.asList("integer", null)), 1, true, true));
+        attributes.add(new Attribute("name", new ArrayList<>(Arrays.asList("varchar", "20")), 0, false, false));
+        attributes.add(new Attribute("score", new ArrayList<>(Arrays.asList("double", null)), 0, false, false));
+        attributes.add(new Attribute("active", new ArrayList<>(Arrays.asList("boolean", null)), 0, false, false));
+        return attributes;
+    }
+
+    private static Record row(int key) {
+        return new Record(new ArrayList<>(Arrays.asList(key, "name" + key, key * 1.5, key % 2 == 0)));
+    }
+}
@@ -0,0 +1,102 @@
+package database;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+/**
+ * Reusable direct buffers of one page for reading and writing table files.
+ * <p>
+ * A FileChannel reading into a heap buffer reads into a direct buffer of its own and copies the bytes over, so
+ * pages are read straight into direct buffers instead. Allocating direct memory is slow and freeing it waits for
+ * the garbage collector, so a buffer is handed back once its bytes were decoded or written and the next read
+ * borrows it again. A scan in steady state then allocates no page buffers at all.
+ * <p>
+ * Buffers start on an ALIGNMENT byte boundary, the size of a disk sector. A buffer is page sized whatever was
+ * read into it, callers set the limit they need.
+ */
+class BufferPool {
+
+    // every buffer starts at a multiple of this many bytes in memory
+    static final int ALIGNMENT = 512;
+
+    private final int pageSize;
+
+    // free buffers kept at most, buffers handed back beyond that are left to the garbage collector
+    private final int maxFree;
+
+    private final ArrayDeque<ByteBuffer> free = new ArrayDeque<>();
+
+    // the buffers in free, to catch a buffer handed back twice
+    private final Set<ByteBuffer> freeSet = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    // buffers this pool allocated, views of mapped files handed back by mistake are not kept
+    private final Set<ByteBuffer> owned = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    private long allocations = 0;
+
+    /**
+     * @param pageSize
+     * @param maxFree   free buffers kept for reuse
+     */
+    BufferPool(int pageSize, int maxFree) {
+        this.pageSize = pageSize;
+        this.maxFree = maxFree;
+    }
+
+    /**
+     * @return a buffer of one page, position 0 and limit the page size
+     */
+    synchronized ByteBuffer acquire() {
+        ByteBuffer buffer = free.pollFirst();
+        if (buffer != null) {
+            freeSet.remove(buffer);
+        } else {
+            int stride = (pageSize + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+            buffer = ByteBuffer.allocateDirect(stride + ALIGNMENT).alignedSlice(ALIGNMENT);
+            buffer.limit(pageSize);
+            buffer = buffer.slice();
+            owned.add(buffer);
+            allocations++;
+        }
+        buffer.clear();
+        return buffer;
+    }
+
+    /**
+     * hands a buffer back, it must not be used afterwards
+     * @param buffer    a buffer returned by acquire, anything else is ignored
+     * @throws IllegalStateException if the buffer is already free, the caller that released it first or the one
+     *                               that borrowed it since could still be using it
+     */
+    synchronized void release(ByteBuffer buffer) {
+        if (buffer == null || !owned.contains(buffer)) {
+            return;
+        }
+        if (freeSet.contains(buffer)) {
+            throw new IllegalStateException("BUFFER WAS HANDED BACK TO THE POOL TWICE");
+        }
+        if (free.size() >= maxFree) {
+            owned.remove(buffer);
+            return;
+        }
+        free.addFirst(buffer);
+        freeSet.add(buffer);
+    }
+
+    /**
+     * @return number of buffers allocated since the pool was created
+     */
+    synchronized long getAllocations() {
+        return allocations;
+    }
+
+    /**
+     * @return number of buffers waiting to be borrowed
+     */
+    synchronized int getFreeBuffers() {
+        return free.size();
+    }
+}
@@ -0,0 +1,84 @@
+package database;
+
+/**
+ * Counters of how the page buffer served one table, or every table together.
+ * <p>
+ * The buffer keeps one set per table and hands out copies, so a copy does not change once it is returned.
+ * Bytes are counted as they are in the table file, so the pages of compressed tables count their compressed size.
+ */
+public class BufferStats {
+
+    // getPage calls answered from the buffer
+    long hits;
+
+    // getPage calls that had to read the page
+    long misses;
+
+    // pages removed from the buffer to make room for another page
+    long evictions;
+
+    // dirty pages written back to the table file
+    long writeBacks;
+
+    // bytes of pages read from the table file, read ahead included
+    long bytesRead;
+
+    // bytes of pages written to the table file
+    long bytesWritten;
+
+    BufferStats() {
+    }
+
+    private BufferStats(BufferStats stats) {
+        add(stats);
+    }
+
+    BufferStats copy() {
+        return new BufferStats(this);
+    }
+
+    /**
+     * adds the counters of another set to this one
+     * @param stats
+     */
+    void add(BufferStats stats) {
+        hits += stats.hits;
+        misses += stats.misses;
+        evictions += stats.evictions;
+        writeBacks += stats.writeBacks;
+        bytesRead += stats.bytesRead;
+        bytesWritten += stats.bytesWritten;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public long getEvictions() {
+        return evictions;
+    }
+
+    public long getWriteBacks() {
+        return writeBacks;
+    }
+
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    /**
+     * @return fraction of getPage calls answered from the buffer, 0 if there were none
+     */
+    public double getHitRatio() {
+        long requests = hits + misses;
+        return requests == 0 ? 0 : (double) hits / requests;
+    }
+}
@@ -4,12 +4,21 @@ import exception.*;
 import queryProcessor.queries.CreateTableQuery;
 import queryProcessor.queries.InsertQuery;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.Map;
+import java.util.zip.CRC32;
 
 public class Catalog {
 
@@ -17,8 +26,34 @@ public class Catalog {
     private HashMap<Integer, String> tableName;
     private int pageSize;
 
+    // pages in a segment file of a table, 0 if every table is one file
+    private int segmentPages = DEFAULT_SEGMENT_PAGES;
+
     private int numTables;
 
+    // version of the table file format, kept so databases created by older versions still open
+    // records are written one after another after a record count
+    public static final int FORMAT_PACKED_PAGES = 0;
+    // records are found through a slot directory, see SlottedPage
+    public static final int FORMAT_SLOTTED_PAGES = 1;
+    // slotted pages holding records in the compact format, see RecordFormatV2
+    public static final int FORMAT_COMPACT_RECORDS = 2;
+    // the catalog stores table options, the pages of compressed tables are found through a PageMap
+    public static final int FORMAT_TABLE_OPTIONS = 3;
+    // the catalog is one checksummed block with UTF names and delta encoded page orders, pages are unchanged
+    public static final int FORMAT_BULK_CATALOG = 4;
+    // tables are stored in segment files of a fixed number of pages, see TableFileCache
+    public static final int FORMAT_SEGMENTED_FILES = 5;
+    public static final int CURRENT_FORMAT = FORMAT_SEGMENTED_FILES;
+
+    // pages in a segment file of a new database
+    public static final int DEFAULT_SEGMENT_PAGES = 8192;
+
+    // table option flags, the low byte of the options of a table
+    private static final int OPTION_COMPRESSED = 1;
+    // the buffer quota of a table is kept in the options above the flags
+    private static final int OPTION_QUOTA_SHIFT = 8;
+    private int formatVersion = CURRENT_FORMAT;
 
     // used to extract pageorder for writing
     private HashMap<String, Table> tables;
@@ -43,131 +78,217 @@ public class Catalog {
      * @throws IOException
      */
     public void writeCatalog() throws IOException {
-        RandomAccessFile raf = new RandomAccessFile(new File(filePath), "rw");
-        raf.seek(0);
+        // built in memory and written in one go
+        byte[] image = toBytes();
+        // written next to the catalog and moved over it, a crash while writing leaves the old catalog
+        File tmp = new File(filePath + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(tmp)) {
+            out.write(image);
+            // the write ahead log is only cut once the catalog is on disk
+            out.getFD().sync();
+        }
+        Files.move(tmp.toPath(), Paths.get(filePath), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * @return the catalog as writeCatalog writes it to file
+     * @throws IOException
+     */
+    public byte[] toBytes() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        writeCatalog(new DataOutputStream(bytes));
+        return bytes.toByteArray();
+    }
 
+    private void writeCatalog(DataOutput out) throws IOException {
+        // format version, negative so it can not be mistaken for the number of tables of an older catalog
+        if (formatVersion != FORMAT_PACKED_PAGES) {
+            out.writeInt(-formatVersion);
+        }
+        if (formatVersion >= FORMAT_BULK_CATALOG) {
+            // length and checksum of the rest of the catalog come first
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            writeBody(new DataOutputStream(body));
+            CRC32 crc = new CRC32();
+            crc.update(body.toByteArray());
+            out.writeInt(body.size());
+            out.writeInt((int) crc.getValue());
+            out.write(body.toByteArray());
+            return;
+        }
+        writeBody(out);
+    }
+
+    private void writeBody(DataOutput out) throws IOException {
         //number of tables;
-        raf.writeInt(getNumTables());
+        out.writeInt(getNumTables());
         // page size
-        raf.writeInt(pageSize);
+        out.writeInt(pageSize);
+        if (formatVersion >= FORMAT_SEGMENTED_FILES) {
+            out.writeInt(segmentPages);
+        }
 
         // writes tables
-        writeTables(raf, getNumTables());
-
-        raf.close();
+        writeTables(out);
     }
 
     /**
      * writes tables to file
-     * @param raf
-     * @param numTables
+     * @param out
      * @throws IOException
      */
-    private void writeTables(RandomAccessFile raf, int numTables) throws IOException {
+    private void writeTables(DataOutput out) throws IOException {
         // reorders tables by tableID and puts them into a list
-        ArrayList<SchemaTable> schemaTableList = new ArrayList<>(numTables);
-        for (int i = 0; i < numTables; i++) {
-            schemaTableList.add(null);
-        }
-        for (Map.Entry<String, SchemaTable> table : schema.entrySet()) {
-            SchemaTable schemaTable = table.getValue();
-            int tableID = schemaTable.getTableID();
-
-            schemaTableList.set(tableID, schemaTable);
-        }
+        ArrayList<SchemaTable> schemaTableList = new ArrayList<>(schema.values());
+        schemaTableList.sort((t1, t2) -> Integer.compare(t1.getTableID(), t2.getTableID()));
 
         // write tables to catalog file
-        for (int tableID = 0; tableID < numTables; tableID++) {
-            SchemaTable schemaTable = schemaTableList.get(tableID);
-
+        for (SchemaTable schemaTable : schemaTableList) {
             // table ID
-            raf.writeInt(tableID);
+            out.writeInt(schemaTable.getTableID());
 
             // table name
-            writeChars(raf, schemaTable.getTableName());
+            writeChars(out, schemaTable.getTableName());
 
             // number of attributes
             int numAttrs = schemaTable.getAttributes().size();
-            raf.writeInt(numAttrs);
+            out.writeInt(numAttrs);
 
             // writes attributes
-            writeAttributes(raf, schemaTable.getAttributes());
+            writeAttributes(out, schemaTable.getAttributes());
 
             // writes pageID order
-            writePageOrder(raf, schemaTable.getTableName(), tables);
+            writePageOrder(out, schemaTable.getTableName(), tables);
+
+            // table options
+            if (formatVersion >= FORMAT_TABLE_OPTIONS) {
+                out.writeInt(getTableOptions(schemaTable));
+            }
         }
 
     }
 
+    private static int getTableOptions(SchemaTable schemaTable) {
+        int options = schemaTable.isCompressed() ? OPTION_COMPRESSED : 0;
+        return options | schemaTable.getBufferQuota() << OPTION_QUOTA_SHIFT;
+    }
+
+    private static void setTableOptions(SchemaTable schemaTable, int options) {
+        schemaTable.setCompressed((options & OPTION_COMPRESSED) != 0);
+        schemaTable.setBufferQuota(options >>> OPTION_QUOTA_SHIFT);
+    }
+
     /**
      * writes number of chars and the chars to file
-     * @param raf
+     * @param out
      * @param str
      * @throws IOException
      */
-    private void writeChars(RandomAccessFile raf, String str) throws IOException {
+    private void writeChars(DataOutput out, String str) throws IOException {
+        if (formatVersion >= FORMAT_BULK_CATALOG) {
+            out.writeUTF(str);
+            return;
+        }
         // write string length
         int len = str.length();
-        raf.writeInt(len);
+        out.writeInt(len);
 
         // write chars
         char[] chars = str.toCharArray();
         for (int i = 0; i < len; i++) {
-            raf.writeChar(chars[i]);
+            out.writeChar(chars[i]);
         }
     }
 
     /**
      * writes attributes to file
-     * @param raf
+     * @param out
      * @param attributes
      * @throws IOException
      */
-    private void writeAttributes(RandomAccessFile raf, ArrayList<Attribute> attributes) throws IOException {
+    private void writeAttributes(DataOutput out, ArrayList<Attribute> attributes) throws IOException {
         // iterate through and write attributes to file
         for (Attribute attr : attributes) {
             // attribute name
             String attrName = attr.getName();
-            writeChars(raf, attrName);
+            writeChars(out, attrName);
 
             // is primary key?
-            raf.writeInt(attr.isPrimaryKey());
+            out.writeInt(attr.isPrimaryKey());
 
             if(attr.isUnique()){
-                raf.writeInt(1);
+                out.writeInt(1);
             }else {
-                raf.writeInt(0);
+                out.writeInt(0);
             }
 
             if(attr.isNotNull()){
-                raf.writeInt(1);
+                out.writeInt(1);
             }else {
-                raf.writeInt(0);
+                out.writeInt(0);
             }
 
             ArrayList<String> attrType = attr.getType();
 
             // type
             int typeKey = getTypeKey(attrType.get(0));
-            raf.writeInt(typeKey);
+            out.writeInt(typeKey);
 
             // number of characters (for char and varchar)
             String numChars = attrType.get(1);
             if (numChars==null) { numChars = "0"; }
-            raf.writeInt(Integer.parseInt(numChars));
+            out.writeInt(Integer.parseInt(numChars));
         }
     }
 
-    private void writePageOrder(RandomAccessFile raf, String tableName, HashMap<String, Table> tables) throws IOException {
+    private void writePageOrder(DataOutput out, String tableName, HashMap<String, Table> tables) throws IOException {
         Table t = tables.get(tableName);
         int num = t.getNumPages();
         ArrayList<Integer> numPages = t.getPages();
-        raf.writeInt(num);
+        if (formatVersion >= FORMAT_BULK_CATALOG) {
+            // pages mostly follow each other, so each ID is written as its difference from the one before
+            writeVarInt(out, num);
+            int previous = -1;
+            for (int pageID : numPages) {
+                int delta = pageID - previous;
+                writeVarInt(out, (delta << 1) ^ (delta >> 31));
+                previous = pageID;
+            }
+            return;
+        }
+        out.writeInt(num);
         for(int i = 0; i < num; i++) {
-            raf.writeInt(numPages.get(i));
+            out.writeInt(numPages.get(i));
         }
     }
 
+    /**
+     * writes an int 7 bits per byte, small values take one byte
+     * @param out
+     * @param value     read as unsigned
+     * @throws IOException
+     */
+    private static void writeVarInt(DataOutput out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readVarInt(DataInput in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < Integer.SIZE; shift += 7) {
+            byte b = in.readByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("CATALOG IS CORRUPT, VARINT TOO LONG");
+    }
+
     /**
      * returns int key based on string of type
      * @param typeStr
@@ -212,103 +333,227 @@ public class Catalog {
         return "integer";
     }
 
+    /**
+     * the definition of one table without its page order, so it takes the same room however big the table is
+     * @param name
+     * @return the table as restoreTable reads it
+     * @throws IOException
+     */
+    public byte[] tableToBytes(String name) throws IOException {
+        SchemaTable schemaTable = schema.get(name);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(schemaTable.getTableID());
+        writeChars(out, name);
+        out.writeInt(schemaTable.getAttributes().size());
+        writeAttributes(out, schemaTable.getAttributes());
+        out.writeInt(getTableOptions(schemaTable));
+        return bytes.toByteArray();
+    }
+
+    /**
+     * adds a table returned by tableToBytes to the schema, replacing the table with both its ID and name
+     * the page order is kept if the table was already in the schema, a new table starts without pages
+     * a table holding only the ID or only the name was created after the definition was logged, so the schema is
+     * newer than the definition and it is not added
+     * @param definition
+     * @return the table added, null if another table has its ID or name
+     * @throws IOException
+     */
+    public SchemaTable restoreTable(byte[] definition) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(definition));
+        int tableID = in.readInt();
+        String name = readChars(in);
+        ArrayList<Attribute> attributes = readAttributes(in, in.readInt());
+        int options = in.readInt();
+
+        SchemaTable old = schema.get(name);
+        String oldName = tableName.get(tableID);
+        if ((old != null && old.getTableID() != tableID) || (oldName != null && !oldName.equals(name))) {
+            return null;
+        }
+        ArrayList<Integer> pageOrder = old == null ? new ArrayList<>() : old.getPageOrder();
+
+        SchemaTable schemaTable = new SchemaTable(tableID, name, attributes, pageOrder);
+        setTableOptions(schemaTable, options);
+        schema.put(name, schemaTable);
+        tableName.put(tableID, name);
+        return schemaTable;
+    }
+
     /**
      * Restore table schema from memory
      * @return
      */
     public void restoreSchema() throws IOException {
-        // reading catalog file to recreate database
-        RandomAccessFile raf = new RandomAccessFile(new File(filePath), "r");
-        raf.seek(0);
-        numTables = raf.readInt();
-        pageSize = raf.readInt();
+        // reading catalog file to recreate database, in one read
+        restoreSchema(Files.readAllBytes(Paths.get(filePath)));
+    }
+
+    /**
+     * replaces the schema with a catalog returned by toBytes
+     * @param image
+     * @throws IOException
+     */
+    public void restoreSchema(byte[] image) throws IOException {
+        schema.clear();
+        tableName.clear();
+        readCatalog(new DataInputStream(new ByteArrayInputStream(image)), image.length);
+    }
+
+    /**
+     * @param in
+     * @param length    bytes of the catalog
+     * @throws IOException
+     */
+    private void readCatalog(DataInput in, int length) throws IOException {
+        int first = in.readInt();
+        formatVersion = FORMAT_PACKED_PAGES;
+        if (first < 0) {
+            formatVersion = -first;
+            first = in.readInt();
+        }
+        if (formatVersion > CURRENT_FORMAT) {
+            throw new IOException(String.format("DATABASE FORMAT VERSION %d IS NEWER THAN THE SUPPORTED VERSION %d",
+                    formatVersion, CURRENT_FORMAT));
+        }
+        if (formatVersion >= FORMAT_BULK_CATALOG) {
+            // length and checksum of the rest of the catalog, the length is checked before it is trusted
+            if (first < 0 || first > length - 3 * Integer.BYTES) {
+                throw new IOException("CATALOG IS CORRUPT, LENGTH DOES NOT MATCH THE FILE");
+            }
+            byte[] body = new byte[first];
+            int checksum = in.readInt();
+            in.readFully(body);
+            CRC32 crc = new CRC32();
+            crc.update(body);
+            if ((int) crc.getValue() != checksum) {
+                throw new IOException("CATALOG IS CORRUPT, CHECKSUM DOES NOT MATCH");
+            }
+            in = new DataInputStream(new ByteArrayInputStream(body));
+            first = in.readInt();
+        }
+        numTables = first;
+        pageSize = in.readInt();
+        segmentPages = formatVersion >= FORMAT_SEGMENTED_FILES ? in.readInt() : 0;
 
         // add tables to schema
-        readTables(raf, numTables);
+        readTables(in, numTables);
 
-        raf.close();
+        if (formatVersion == FORMAT_TABLE_OPTIONS) {
+            // only the catalog layout changed since, it is written in that layout from now on
+            // table files stay as they are, a table that outgrew a segment can not be split afterwards
+            formatVersion = FORMAT_BULK_CATALOG;
+        }
     }
 
     /**
-     * reads and returns string based on length given
-     * @param raf
-     * @param len
+     * reads a string written by writeChars
+     * @param in
      * @return
      * @throws IOException
      */
-    private String readChars(RandomAccessFile raf, int len) throws IOException {
-        String str = "";
+    private String readChars(DataInput in) throws IOException {
+        if (formatVersion >= FORMAT_BULK_CATALOG) {
+            return in.readUTF();
+        }
+        int len = in.readInt();
+        char[] chars = new char[len];
         for (int i = 0; i < len; i++) {
-            str += raf.readChar();
+            chars[i] = in.readChar();
+        }
+        return new String(chars);
+    }
+
+    /**
+     * reads a page order written by writePageOrder
+     * @param in
+     * @return page IDs in page order
+     * @throws IOException
+     */
+    private ArrayList<Integer> readPageOrder(DataInput in) throws IOException {
+        if (formatVersion >= FORMAT_BULK_CATALOG) {
+            int num = readVarInt(in);
+            ArrayList<Integer> pageOrder = new ArrayList<>(num);
+            int previous = -1;
+            for (int i = 0; i < num; i++) {
+                int zigzag = readVarInt(in);
+                previous += (zigzag >>> 1) ^ -(zigzag & 1);
+                pageOrder.add(previous);
+            }
+            return pageOrder;
+        }
+        int pageOrderLen = in.readInt();
+        ArrayList<Integer> pageOrder = new ArrayList<>(pageOrderLen);
+        for(int j = 0; j < pageOrderLen; j++) {
+            pageOrder.add(in.readInt());
         }
-        return str;
+        return pageOrder;
     }
 
     /**
      * reads tables from catalog and adds them to schema
-     * @param raf
+     * @param in
      * @param numTables
      * @throws IOException
      */
-    private void readTables(RandomAccessFile raf, int numTables) throws IOException {
+    private void readTables(DataInput in, int numTables) throws IOException {
         // reading table schemas
         for(int i = 0; i < numTables; i++) {
-            int tableID = raf.readInt();
-            int nameLen = raf.readInt();
-            String tableName = "";
+            int tableID = in.readInt();
+            String tableName = readChars(in);
 
-            tableName = readChars(raf, nameLen);
-
-            int numAttrs = raf.readInt();
+            int numAttrs = in.readInt();
 
             // reads attributes
-            ArrayList<Attribute> attributes = readAttributes(raf, numAttrs);
+            ArrayList<Attribute> attributes = readAttributes(in, numAttrs);
 
             // read page order
-            ArrayList<Integer> pageOrder = new ArrayList<>();
-            int pageOrderLen = raf.readInt();
-            for(int j = 0; j < pageOrderLen; j++) {
-                pageOrder.add(raf.readInt());
+            ArrayList<Integer> pageOrder = readPageOrder(in);
+
+            // table options
+            int options = 0;
+            if (formatVersion >= FORMAT_TABLE_OPTIONS) {
+                options = in.readInt();
             }
 
             // add table to schema
-            schema.put(tableName, new SchemaTable(tableID, tableName, attributes, pageOrder));
+            SchemaTable schemaTable = new SchemaTable(tableID, tableName, attributes, pageOrder);
+            setTableOptions(schemaTable, options);
+            schema.put(tableName, schemaTable);
             this.tableName.put(tableID, tableName);
         }
     }
 
     /**
      * reads and returns the list of attributes from the catalog file
-     * @param raf
+     * @param in
      * @param numAttrs
      * @throws IOException
      */
-    private ArrayList<Attribute> readAttributes(RandomAccessFile raf, int numAttrs) throws IOException {
+    private ArrayList<Attribute> readAttributes(DataInput in, int numAttrs) throws IOException {
         boolean isUnique;
         boolean isNotNull;
         ArrayList<Attribute> attributes = new ArrayList<>();
 
         for (int z = 0; z < numAttrs; z++) {
-            int attrNameLen = raf.readInt();
-            String attrName = "";
+            String attrName = readChars(in);
 
-            attrName = readChars(raf, attrNameLen);
-
-            int pKey = raf.readInt();
-            int unique = raf.readInt();
+            int pKey = in.readInt();
+            int unique = in.readInt();
             if(unique==1){
                 isUnique = true;
             }else {
                 isUnique = false;
             }
-            int notnull = raf.readInt();
+            int notnull = in.readInt();
             if(notnull==1){
                 isNotNull = true;
             }else {
                 isNotNull = false;
             }
-            int attrType = raf.readInt();
-            int attrSize = raf.readInt();
+            int attrType = in.readInt();
+            int attrSize = in.readInt();
 
             // sets type array
             ArrayList<String> attrTypeArr = new ArrayList<>(2);
@@ -327,18 +572,94 @@ public class Catalog {
         return  pageSize;
     }
 
+    public int getFormatVersion() {
+        return formatVersion;
+    }
+
+    /**
+     * @return pages in a segment file of a table, 0 if every table is one file
+     */
+    public int getSegmentPages() {
+        return segmentPages;
+    }
+
     /**
      * Creates an individual table schema
      * returns ID it uses for table
      */
     public int createSchema(String name, ArrayList<Attribute> attributes) {
+        return createSchema(name, attributes, false, 0);
+    }
+
+    /**
+     * Creates an individual table schema
+     * returns ID it uses for table
+     * @param name
+     * @param attributes
+     * @param compressed    true if the pages of the table are compressed on disk
+     * @param bufferQuota   page buffer frames reserved for the table, 0 for none
+     * @throws InvalidTableOptionException if the database format can not store table options
+     */
+    public int createSchema(String name, ArrayList<Attribute> attributes, boolean compressed, int bufferQuota) {
+        if (compressed) {
+            checkTableOptions("COMPRESSION");
+        }
+        if (bufferQuota > 0) {
+            checkTableOptions("A BUFFER QUOTA");
+        }
+
+        int nextID = nextTableID();
+        tableName.put(nextID, name);
+        SchemaTable schemaTable = new SchemaTable(nextID, name, attributes, new ArrayList<>());
+        schemaTable.setCompressed(compressed);
+        schemaTable.setBufferQuota(bufferQuota);
+        schema.put(name, schemaTable);
+        return nextID;
+    }
 
-        int nextID = schema.size();
+    /**
+     * gives a table new attributes under a new ID and without pages, keeping its table options
+     * the old ID is free again afterwards, it is taken while the new one is picked so the files of the old table
+     * are not shared with the new one
+     * @param name
+     * @param attributes
+     * @return ID of the new table
+     */
+    public int replaceSchema(String name, ArrayList<Attribute> attributes) {
+        SchemaTable old = schema.get(name);
+        int nextID = nextTableID();
+        tableName.remove(old.getTableID());
         tableName.put(nextID, name);
-        schema.put(name, new SchemaTable(nextID, name, attributes, new ArrayList<>()));
+        SchemaTable schemaTable = new SchemaTable(nextID, name, attributes, new ArrayList<>());
+        schemaTable.setCompressed(old.isCompressed());
+        schemaTable.setBufferQuota(old.getBufferQuota());
+        schema.put(name, schemaTable);
+        return nextID;
+    }
+
+    /**
+     * @return lowest ID no table has, IDs of dropped tables are reused
+     */
+    private int nextTableID() {
+        int nextID = 0;
+        while (tableName.containsKey(nextID)) {
+            nextID++;
+        }
         return nextID;
     }
 
+    /**
+     * @param option    name of the option for the error message
+     * @throws InvalidTableOptionException if the database format can not store table options
+     */
+    public void checkTableOptions(String option) {
+        if (formatVersion < FORMAT_TABLE_OPTIONS) {
+            throw new InvalidTableOptionException(String.format(
+                    "ERROR: %s NEEDS A DATABASE CREATED WITH FORMAT VERSION %d OR LATER, THIS ONE IS VERSION %d",
+                    option, FORMAT_TABLE_OPTIONS, formatVersion));
+        }
+    }
+
     public void verifyInsertValue(String name, ArrayList<Object> row) {
         ArrayList<Attribute> insertValueTypes = new ArrayList<>();
         ArrayList<Attribute> validSchema = schema.get(name).getAttributes();
@@ -467,43 +788,47 @@ public class Catalog {
         return schema;
     }
 
-    // if returns true, r1 should go before r2. If false r1 is larger than r2
-    public boolean compareKeys(SchemaTable sTable, Record r1, Record r2) {
-        int keyIdx = 0;
-        ArrayList<String> type = new ArrayList<>();
+    /**
+     * @param sTable
+     * @return index of the primary key in the records of the table
+     */
+    public int getPrimaryKeyIndex(SchemaTable sTable) {
         ArrayList<Attribute> attrs = sTable.getAttributes();
-        // finding pkey index
-        for(int i = 0; i < attrs.size(); i++) {
-            Attribute curAttr = attrs.get(i);
-            if(curAttr.isPrimaryKey() == 1) {
-                keyIdx = i;
-                type = curAttr.getType();
-                break;
+        for (int i = 0; i < attrs.size(); i++) {
+            if (attrs.get(i).isPrimaryKey() == 1) {
+                return i;
             }
         }
+        return 0;
+    }
 
+    // if returns true, r1 should go before r2. If false r1 is larger than r2
+    public boolean compareKeys(SchemaTable sTable, Record r1, Record r2) {
+        int keyIdx = getPrimaryKeyIndex(sTable);
+        String type = sTable.getAttributes().get(keyIdx).getType().get(0);
+        return compareKeyValues(type, r1.getValues().get(keyIdx), r2.getValues().get(keyIdx));
+    }
+
+    // if returns true, key1 should go before key2. If false key1 is larger than key2
+    public boolean compareKeyValues(String type, Object key1, Object key2) {
         // casting to appropriate type and comparing
-        switch(type.get(keyIdx)) {
+        switch(type) {
             case "integer":
-                if((int)r1.getData().get(keyIdx) > (int)r2.getData().get(keyIdx)) {
+                if((int)key1 > (int)key2) {
                     return false;
                 }
                 return true;
             case "double":
-                if((Double)r1.getData().get(keyIdx) > (Double)r2.getData().get(keyIdx)) {
+                if((Double)key1 > (Double)key2) {
                     return false;
                 }
                 return true;
             case "char":
-                if(r1.getData().get(keyIdx).toString().compareTo(r2.getData().get(keyIdx).toString()) < 0) {
-                    return false;
-                }
-                return true;
             case "varchar":
-                if(r1.getData().get(keyIdx).toString().compareTo(r2.getData().get(keyIdx).toString()) < 0) {
+                if(key1.toString().compareTo(key2.toString()) < 0) {
                     return false;
                 }
-                return true; 
+                return true;
         }
         return false; // should never reach here but java wont stop yelling at me
     }
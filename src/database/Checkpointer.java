@@ -0,0 +1,93 @@
+package database;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+
+/**
+ * Background thread that writes the pages that were dirty at the last checkpoint.
+ * <p>
+ * A checkpoint only cuts the write ahead log back to the oldest change that is not in a table file yet, so a page
+ * that stays dirty holds on to the log. Once a checkpoint is taken the pages of its dirty page table are written
+ * one at a time with the buffer locked, so the next checkpoint can cut the log past them. Pages changed by the
+ * running statement or in use are skipped, the next checkpoint lists them again.
+ */
+class Checkpointer implements Runnable {
+
+    private final PageBuffer buffer;
+
+    private final Thread thread;
+
+    private volatile boolean running = true;
+
+    // page table keys of the dirty pages of the last checkpoint not written yet
+    private final ArrayDeque<Long> pending = new ArrayDeque<>();
+
+    // log end when the last checkpoint was taken, pages changed since are left for the next one
+    private long checkpointLSN;
+
+    /**
+     * @param buffer    buffer whose pages are written
+     */
+    Checkpointer(PageBuffer buffer) {
+        this.buffer = buffer;
+        this.thread = new Thread(this, "checkpointer");
+        // never keeps the database running, the buffer is purged at shutdown anyway
+        this.thread.setDaemon(true);
+    }
+
+    void start() {
+        thread.start();
+    }
+
+    /**
+     * hands over the dirty page table of a checkpoint, replacing what is left of the previous one
+     * @param keys  page table keys of the dirty pages
+     * @param lsn   log end when the checkpoint was taken
+     */
+    synchronized void checkpointTaken(Collection<Long> keys, long lsn) {
+        pending.clear();
+        pending.addAll(keys);
+        checkpointLSN = lsn;
+        notifyAll();
+    }
+
+    /**
+     * stops the thread and waits for the page it is writing
+     */
+    void stop() {
+        synchronized (this) {
+            running = false;
+            notifyAll();
+        }
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void run() {
+        while (running) {
+            long key;
+            long lsn;
+            synchronized (this) {
+                if (!running) {
+                    return;
+                }
+                if (pending.isEmpty()) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    continue;
+                }
+                key = pending.pollFirst();
+                lsn = checkpointLSN;
+            }
+            // one page per call so the buffer lock is given up between writes
+            buffer.flushForCheckpoint(key, lsn);
+        }
+    }
+}
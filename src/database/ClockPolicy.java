@@ -0,0 +1,119 @@
+package database;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.function.LongPredicate;
+
+/**
+ * CLOCK (second chance) replacement. Buffered pages sit in a circular array of slots with a reference bit.
+ * An access only sets the bit; the hand sweeps the slots, clearing set bits, and evicts the first page
+ * whose bit is already clear. Pages that may not be evicted are passed over without touching their bit.
+ */
+public class ClockPolicy implements ReplacementPolicy {
+
+    private long[] keys;
+
+    private boolean[] referenced;
+
+    private boolean[] used;
+
+    // key -> slot index
+    private final HashMap<Long, Integer> slots = new HashMap<>();
+
+    private final ArrayDeque<Integer> freeSlots = new ArrayDeque<>();
+
+    private int hand = 0;
+
+    private int nextUnusedSlot = 0;
+
+    public ClockPolicy(int bufferSize) {
+        int capacity = Math.max(bufferSize, 1);
+        keys = new long[capacity];
+        referenced = new boolean[capacity];
+        used = new boolean[capacity];
+    }
+
+    public void pageAdded(long key) {
+        Integer slot = slots.get(key);
+        if (slot == null) {
+            slot = takeSlot();
+            keys[slot] = key;
+            used[slot] = true;
+            slots.put(key, slot);
+        }
+        referenced[slot] = true;
+    }
+
+    public void pageAccessed(long key) {
+        Integer slot = slots.get(key);
+        if (slot != null) {
+            referenced[slot] = true;
+        }
+    }
+
+    public void pageRemoved(long key) {
+        Integer slot = slots.remove(key);
+        if (slot != null) {
+            used[slot] = false;
+            referenced[slot] = false;
+            freeSlots.push(slot);
+        }
+    }
+
+    public long evict(LongPredicate evictable) {
+        // two full sweeps clear every reference bit, after that nothing is evictable
+        for (int step = 0; step < 2 * nextUnusedSlot; step++) {
+            if (hand >= nextUnusedSlot) {
+                hand = 0;
+            }
+            int slot = hand++;
+            if (!used[slot] || !evictable.test(keys[slot])) {
+                continue;
+            }
+            if (referenced[slot]) {
+                referenced[slot] = false; // second chance
+                continue;
+            }
+            long key = keys[slot];
+            pageRemoved(key);
+            return key;
+        }
+        return NO_VICTIM;
+    }
+
+    public long[] nextVictims(int count, LongPredicate evictable) {
+        long[] victims = new long[count];
+        int found = 0;
+        // the hand takes pages with a clear bit on its first sweep and the ones it gave a second chance after
+        for (int sweep = 0; sweep < 2 && found < count; sweep++) {
+            for (int step = 0; step < nextUnusedSlot && found < count; step++) {
+                int slot = (hand + step) % nextUnusedSlot;
+                if (used[slot] && referenced[slot] == (sweep == 1) && evictable.test(keys[slot])) {
+                    victims[found++] = keys[slot];
+                }
+            }
+        }
+        return Arrays.copyOf(victims, found);
+    }
+
+    public String getName() {
+        return "clock";
+    }
+
+    /**
+     * returns a free slot, growing the clock if every slot is taken
+     */
+    private int takeSlot() {
+        if (!freeSlots.isEmpty()) {
+            return freeSlots.pop();
+        }
+        if (nextUnusedSlot == keys.length) {
+            int capacity = keys.length * 2;
+            keys = Arrays.copyOf(keys, capacity);
+            referenced = Arrays.copyOf(referenced, capacity);
+            used = Arrays.copyOf(used, capacity);
+        }
+        return nextUnusedSlot++;
+    }
+}
@@ -67,19 +67,27 @@ public class Database {
         String name = query.getName();
         ArrayList<Attribute> attributes = query.getAttributes();
 
-        return createTableFunc(name, attributes);
+        boolean created = createTableFunc(name, attributes, query.isCompressed(), query.getBufferQuota());
+        commit(created ? name : null);
+        return created;
     }
 
-    private boolean createTableFunc(String name, ArrayList<Attribute> attributes) {
+    private boolean createTableFunc(String name, ArrayList<Attribute> attributes, boolean compressed, int bufferQuota) {
         boolean tableShouldExist = false;
+        int tableID;
         try {
             catalog.checkTableExists(name, tableShouldExist);
-        } catch (TableAlreadyExistsException e) {
+            // the background flusher reads the catalog while holding the buffer
+            synchronized (manager.getBuffer()) {
+                manager.getBuffer().checkQuota(-1, bufferQuota);
+                tableID = catalog.createSchema(name, attributes, compressed, bufferQuota); // uses same ID generated for tableName HashMap
+                manager.getBuffer().setQuota(tableID, bufferQuota);
+            }
+        } catch (TableAlreadyExistsException | InvalidTableOptionException e) {
             System.err.println(e);
             return false;
         }
 
-        int tableID = catalog.createSchema(name, attributes); // uses same ID generated for tableName HashMap
         // checks schema for which tableID isn't taken
         // int tableID = 0;
         // while (catalog.getTableNameSchema().containsKey(tableID)) {
@@ -97,7 +105,10 @@ public class Database {
     public boolean dropTable(DropQuery query) {
         String tableName = query.getName();
 
-        return dropTableFunc(tableName);
+        boolean dropped = dropTableFunc(tableName);
+        // the drop is already logged
+        commit(null);
+        return dropped;
     }
 
     private boolean dropTableFunc(String tableName) {
@@ -112,24 +123,73 @@ public class Database {
         // database remove from hashmap tables
         Table table = tables.remove(tableName);
 
-        // Removes table and associated pages from pagebuffer
-        manager.getBuffer().removeTable(tableName);
+        // the background flusher reads the catalog while holding the buffer
+        synchronized (manager.getBuffer()) {
+            // the drop is in the log before the files are gone
+            manager.getBuffer().logDrop(table.getTableID());
+
+            // Removes table and associated pages from pagebuffer
+            manager.getBuffer().removeTable(table);
 
-        // Removes schemaTable for dropped table.
-        catalog.getSchema().remove(tableName);
+            // Removes schemaTable for dropped table.
+            catalog.getSchema().remove(tableName);
 
-        // Removes from get table name with id
-        catalog.getTableNameSchema().remove(table.getTableID());
+            // Removes from get table name with id
+            catalog.getTableNameSchema().remove(table.getTableID());
+        }
 
         // Removes from extracting pageorder for writing
         catalog.getTables().remove(tableName);
 
         // Delete table from disk
-        boolean done = new File(String.format("%s\\%d", dbLoc, table.getTableID())).delete();
+        deleteTableFiles(table.getTableID());
 
         return true;
     }
 
+    /**
+     * replaces a table by an empty one with new attributes, see Catalog.replaceSchema
+     * the new table has a new ID, so the files of the old table are left as they are until the statement commits
+     * @param tableName
+     * @param attributes
+     * @param oldTable
+     */
+    private void replaceTableFunc(String tableName, ArrayList<Attribute> attributes, Table oldTable) {
+        int tableID;
+        // the background flusher reads the catalog while holding the buffer
+        synchronized (manager.getBuffer()) {
+            manager.getBuffer().removeTable(oldTable);
+            tableID = catalog.replaceSchema(tableName, attributes);
+            manager.getBuffer().setQuota(tableID, catalog.getSchema().get(tableName).getBufferQuota());
+            try {
+                manager.getBuffer().logReplace(oldTable.getTableID(), catalog.tableToBytes(tableName));
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+
+        if(indexflag){
+            BPlusTree bptree = new BPlusTree(tableName, this.pageSize, attributes);
+            trees.put(tableName, bptree);
+            bptree.printBPlusTreeInfo();
+        }
+        tables.put(tableName, new Table(tableName, tableID));
+    }
+
+    /**
+     * deletes the table file segments, page map and free space map of a table
+     * @param tableID
+     */
+    private void deleteTableFiles(int tableID) {
+        try {
+            TableFileCache.deleteFiles(dbLoc, tableID);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        new File(PageBuffer.pageMapPath(dbLoc, tableID).toString()).delete();
+        new File(PageBuffer.freeSpaceMapPath(dbLoc, tableID).toString()).delete();
+    }
+
     /**
      * drop or add alter table statements
      * gets altered copies of all records from given table, drops old table, creates
@@ -205,15 +265,45 @@ public class Database {
             allRecords = manager.getAddAlterRecords(oldTable, defaultVal);
         }
 
-        // drops old table
-        dropTableFunc(tableName);
-
-        // add new table to the schema using newAttrs
-        createTableFunc(tableName, newAttrs);
+        // replaces old table with an empty one using newAttrs
+        replaceTableFunc(tableName, newAttrs, oldTable);
 
         // inserts all copied records into new table
         insertIntoTableFunc(tableName, allRecords);
 
+        // the new table and its records commit as one statement, the old table is deleted after
+        commit(tableName, oldTable.getTableID());
+        return true;
+    }
+
+    public boolean setBufferQuota(SetQuotaQuery query) {
+        boolean set = setBufferQuotaFunc(query.getName(), query.getPages());
+        commit(set ? query.getName() : null);
+        return set;
+    }
+
+    /**
+     * reserves page buffer frames for a table, or removes its quota
+     * @param tableName
+     * @param pages     frames reserved for the table, 0 removes the quota
+     * @return
+     */
+    private boolean setBufferQuotaFunc(String tableName, int pages) {
+        boolean tableShouldExist = true;
+        try {
+            catalog.checkTableExists(tableName, tableShouldExist);
+            if (pages > 0) {
+                catalog.checkTableOptions("A BUFFER QUOTA");
+            }
+            SchemaTable schemaTable = catalog.getSchema().get(tableName);
+            synchronized (manager.getBuffer()) {
+                manager.getBuffer().setQuota(schemaTable.getTableID(), pages);
+                schemaTable.setBufferQuota(pages);
+            }
+        } catch (NoSuchTableException | InvalidTableOptionException e) {
+            System.err.println(e);
+            return false;
+        }
         return true;
     }
 
@@ -221,7 +311,9 @@ public class Database {
         String tableName = query.getName();
         WhereTree whereTree = query.getWhereTree();
 
-        return  deleteFunc(tableName, whereTree);
+        boolean deleted = deleteFunc(tableName, whereTree);
+        commit(null);
+        return deleted;
     }
 
     /**
@@ -250,8 +342,11 @@ public class Database {
             ArrayList<Integer> pageIDs = table.getPages();
             for(int pageID : pageIDs) {
                 Page page = manager.getBuffer().getPage(table, pageID);
-                page.getContents().clear();
-                page.setNumRecords(0);
+                if (page.getNumRecords() > 0) {
+                    page.clearRecords();
+                    manager.getBuffer().updateFreeSpace(table, page);
+                }
+                manager.getBuffer().releasePage(table, page);
             }
             return true;
         }
@@ -272,19 +367,19 @@ public class Database {
             Integer index = pgs.next();
             Page page = manager.getBuffer().getPage(table, index);
 
-            ArrayList<Record> records = page.getContents();
-            Iterator<Record> recs = records.iterator();
-            while(recs.hasNext()){
-                Record rec = recs.next();
+            int rIndex = 0;
+            while(rIndex < page.getNumRecords()){
+                Record rec = page.getContents().get(rIndex);
 
-                if (whereTree.includeRow(rec.getData(), constructTempSchema(columns, fromTables))){
-                    recs.remove();
-                    page.setNumRecords(page.getNumRecords() - 1);
+                if (whereTree.includeRow(rec.getValues(), constructTempSchema(columns, fromTables))){
+                    page.removeRecord(rIndex);
 
                     // deletes from bplus tree if indexing is on does not work
                     // if(indexFlag){
                     // deleteBplus(tableName, recData.get(pkIndex);
                     // }
+                } else {
+                    rIndex++;
                 }
 
                 if(page.getNumRecords() == 0){
@@ -297,6 +392,10 @@ public class Database {
                     //}
                 }
             }
+            if (page.isDirty()) {
+                manager.getBuffer().updateFreeSpace(table, page);
+            }
+            manager.getBuffer().releasePage(table, page);
         }
         return true;
 
@@ -410,6 +509,7 @@ public class Database {
             success = false;
         }
 
+        commit(null);
         return success;
     }
 
@@ -420,17 +520,18 @@ public class Database {
      */
     public void restoreDatabase(Catalog catalog) throws IOException {
         for (SchemaTable schema : catalog.getSchema().values()) {
-            ArrayList<Integer> pOrder = schema.getPageOrder();
-            int numPages = manager.buffer.readPageIDSSize(schema.getTableID());
+            // the page order in the catalog is all a table needs, pages and table files are read on first use
             Table curTable = new Table(schema.getTableName(), schema.getTableID());
-            for (int i = 0; i < numPages; i++) {
-                Page p = manager.getBuffer().readPage(schema.getTableID(), i);
-                p.setPageID(pOrder.get(i));
-                // reconstruct a table and put in tables hashmap
-                curTable.getPages().add(p.getPageID());
-            }
-            // curTable.getPages().addAll();
+            curTable.getPages().addAll(schema.getPageOrder());
             this.tables.put(schema.getTableName(), curTable);
+            if (schema.getBufferQuota() > 0) {
+                try {
+                    manager.getBuffer().setQuota(schema.getTableID(), schema.getBufferQuota());
+                } catch (InvalidTableOptionException e) {
+                    // the buffer is smaller than when the quota was set, the table shares the buffer this run
+                    System.err.println(e);
+                }
+            }
         }
     }
 
@@ -438,7 +539,61 @@ public class Database {
         String tableName = query.getName();
         ArrayList<ArrayList<Object>> rows = query.getValues();
 
-        return insertIntoTableFunc(tableName, rows);
+        boolean inserted = insertIntoTableFunc(tableName, rows);
+        commit(null);
+        return inserted;
+    }
+
+    /**
+     * ends a statement in the write ahead log, does nothing unless statements are logged
+     * @param changedTable  name of the table the statement created or changed, logged along with the pages,
+     *                      null if the schema did not change
+     */
+    private void commit(String changedTable) {
+        commit(changedTable, -1);
+    }
+
+    /**
+     * @param changedTable
+     * @param replacedTableID   table the statement replaced, its files are deleted once the commit is on disk and
+     *                          before a checkpoint can leave it out of the log, -1 if none
+     */
+    private void commit(String changedTable, int replacedTableID) {
+        PageBuffer buffer = manager.getBuffer();
+        if (buffer.isLogging()) {
+            byte[] tableDefinition = null;
+            if (changedTable != null) {
+                try {
+                    tableDefinition = catalog.tableToBytes(changedTable);
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+            buffer.commit(tableDefinition);
+        }
+        if (replacedTableID != -1) {
+            buffer.forceLog();
+            deleteTableFiles(replacedTableID);
+        }
+        if (buffer.isLogging() && buffer.isCheckpointDue()) {
+            checkpoint();
+        }
+    }
+
+    /**
+     * writes the catalog and takes a checkpoint of the page buffer, recovery then starts from the catalog and the
+     * log from this checkpoint on
+     * the schema changes and page order changes logged so far are all in the written catalog
+     */
+    private void checkpoint() {
+        catalog.extractTables(tables);
+        try {
+            catalog.writeCatalog();
+        } catch (IOException e) {
+            e.printStackTrace();
+            return;
+        }
+        manager.getBuffer().checkpoint();
     }
 
     private boolean updateRecordCheck(String tableName, ArrayList<ArrayList<Object>> rows) {
@@ -452,12 +607,14 @@ public class Database {
                 checkNotNullValues(tableName, row);
                 Table table = tables.get(tableName); // if we get here all values match schema
                 Record record = new Record(row);
+                manager.checkRecordFits(record);
                 manager.insertRecordIntoPage(table, record);
 
             } catch (NoSuchTableException | IncorrectAmountOfAttributesInRowException
                      | InvalidDataTypeInsertionException | CharLengthInsertValueIncorrectException
                      | VarcharLengthExceededException | DuplicatePrimaryKeyException
-                     | InsertingNullIntoNotNullColumnException | InsertingDuplicateValueIntoUniqueColumnException e) {
+                     | InsertingNullIntoNotNullColumnException | InsertingDuplicateValueIntoUniqueColumnException
+                     | RecordTooLargeException e) {
                 System.err.println(e);
                 return false;
             }
@@ -525,8 +682,9 @@ public class Database {
             //Get the page
             Page page = getBuffer().buffer.getPage(table, recPoint.get(1));
             //Removes the record
-            page.getContents().remove(recPoint.get(0));
-            page.setNumRecords(page.getNumRecords() - 1);
+            page.removeRecord(recPoint.get(0));
+            getBuffer().buffer.updateFreeSpace(table, page);
+            getBuffer().buffer.releasePage(table, page);
 
         }
     }
@@ -1052,6 +1210,7 @@ public class Database {
                 checkNotNullValues(tableName, row);
                 Table table = tables.get(tableName); // if we get here all values match schema
                 Record record = new Record(row);
+                manager.checkRecordFits(record);
                 if(indexflag) {
                     ArrayList<Integer> rp = insertIntoBplus(tableName, record);
                     manager.insertUsingRP(rp, record, table);
@@ -1064,7 +1223,8 @@ public class Database {
             } catch (NoSuchTableException | IncorrectAmountOfAttributesInRowException
                      | InvalidDataTypeInsertionException | CharLengthInsertValueIncorrectException
                      | VarcharLengthExceededException | DuplicatePrimaryKeyException
-                     | InsertingNullIntoNotNullColumnException | InsertingDuplicateValueIntoUniqueColumnException e) {
+                     | InsertingNullIntoNotNullColumnException | InsertingDuplicateValueIntoUniqueColumnException
+                     | RecordTooLargeException e) {
                 System.err.println(e);
                 passedAllInserts = false;
                 break;
@@ -1115,29 +1275,33 @@ public class Database {
             Table t = tables.get(name); // table guaranteed to exist check done in parent method
             ArrayList<Integer> pageIDs = t.getPages();
             for (int pageNum = 0; pageNum < pageIDs.size(); pageNum++) {
-                Page page = manager.getBuffer().getPage(t, pageNum);
-                for (Record record : page.getContents()) {
-                    ArrayList<Object> data = record.getData();
-                    for (int j = 0; j < data.size(); j++) {
-                        if (schema.get(j).isPrimaryKey() == 1) {
-                            if (row.get(j).equals(data.get(j))) {
-                                StringBuilder sb = new StringBuilder();
-                                for (int k = 0; k < row.size(); k++) {
-                                    if (row.get(k) == null) {
-                                        sb.append("null");
-                                    } else {
-                                        sb.append(row.get(k).toString());
-                                    }
-                                    if (!(k == row.size() - 1)) {
-                                        sb.append(" ");
+                Page page = manager.getBuffer().getPage(t, pageIDs.get(pageNum));
+                try {
+                    for (Record record : page.getContents()) {
+                        List<Object> data = record.getValues();
+                        for (int j = 0; j < data.size(); j++) {
+                            if (schema.get(j).isPrimaryKey() == 1) {
+                                if (row.get(j).equals(data.get(j))) {
+                                    StringBuilder sb = new StringBuilder();
+                                    for (int k = 0; k < row.size(); k++) {
+                                        if (row.get(k) == null) {
+                                            sb.append("null");
+                                        } else {
+                                            sb.append(row.get(k).toString());
+                                        }
+                                        if (!(k == row.size() - 1)) {
+                                            sb.append(" ");
+                                        }
                                     }
-                                }
-                                throw new DuplicatePrimaryKeyException(
-                                        String.format("DUPLICATE PRIMARY KEY: row(%s)", sb));
+                                    throw new DuplicatePrimaryKeyException(
+                                            String.format("DUPLICATE PRIMARY KEY: row(%s)", sb));
 
+                                }
                             }
                         }
                     }
+                } finally {
+                    manager.getBuffer().releasePage(t, page);
                 }
             }
         }
@@ -1162,30 +1326,34 @@ public class Database {
             Table t = tables.get(name); // table guaranteed to exist check done in parent method
             ArrayList<Integer> pageIDs = t.getPages();
             for (int pageNum = 0; pageNum < pageIDs.size(); pageNum++) {
-                Page page = manager.getBuffer().getPage(t, pageNum);
-                for (Record record : page.getContents()) {
-                    ArrayList<Object> data = record.getData();
-                    for (int j = 0; j < data.size(); j++) {
-                        if (schema.get(j).isUnique()) {
-                            if (row.get(j).equals(data.get(j))) { // cannot happen
-                                StringBuilder sb = new StringBuilder();
-                                for (int k = 0; k < row.size(); k++) {
-                                    if (row.get(k) == null) {
-                                        sb.append("null");
-                                    } else {
-                                        sb.append(row.get(k).toString());
-                                    }
-                                    if (!(k == row.size() - 1)) {
-                                        sb.append(" ");
+                Page page = manager.getBuffer().getPage(t, pageIDs.get(pageNum));
+                try {
+                    for (Record record : page.getContents()) {
+                        List<Object> data = record.getValues();
+                        for (int j = 0; j < data.size(); j++) {
+                            if (schema.get(j).isUnique()) {
+                                if (row.get(j).equals(data.get(j))) { // cannot happen
+                                    StringBuilder sb = new StringBuilder();
+                                    for (int k = 0; k < row.size(); k++) {
+                                        if (row.get(k) == null) {
+                                            sb.append("null");
+                                        } else {
+                                            sb.append(row.get(k).toString());
+                                        }
+                                        if (!(k == row.size() - 1)) {
+                                            sb.append(" ");
+                                        }
                                     }
+                                    throw new InsertingDuplicateValueIntoUniqueColumnException(
+                                            String.format("DUPLICATE VALUES IN UNIQUE COLUMN: value: %s in column(%s: %s)",
+                                                    row.get(j).toString(), schema.get(j).getName(),
+                                                    schema.get(j).typeString()));
                                 }
-                                throw new InsertingDuplicateValueIntoUniqueColumnException(
-                                        String.format("DUPLICATE VALUES IN UNIQUE COLUMN: value: %s in column(%s: %s)",
-                                                row.get(j).toString(), schema.get(j).getName(),
-                                                schema.get(j).typeString()));
                             }
                         }
                     }
+                } finally {
+                    manager.getBuffer().releasePage(t, page);
                 }
             }
         }
@@ -1194,12 +1362,20 @@ public class Database {
     // helper function to reduce redundant code
     public ArrayList<Record> loadTable(ArrayList<Record> megaTable, int startingTable, int[] numPages, ArrayList<Table> selectedTables, List<List<Integer>> pageIds) {
         int curNumPage = numPages[startingTable];
-        for (int j = 0; j < curNumPage; j++) {
-            Table table = selectedTables.get(startingTable);
-            int pageID = pageIds.get(startingTable).get(j);
-            Page page = manager.getBuffer().getPage( table, pageID );
-            ArrayList<Record> pageContents = page.getContents();
-            megaTable.addAll( pageContents );
+        Table scanned = selectedTables.get(startingTable);
+        // large tables are read through a ring of frames so the scan does not flush the buffer
+        manager.getBuffer().startScan(scanned);
+        try {
+            for (int j = 0; j < curNumPage; j++) {
+                Table table = selectedTables.get(startingTable);
+                int pageID = pageIds.get(startingTable).get(j);
+                Page page = manager.getBuffer().getPage( table, pageID );
+                ArrayList<Record> pageContents = page.getContents();
+                megaTable.addAll( pageContents );
+                manager.getBuffer().releasePage(table, page);
+            }
+        } finally {
+            manager.getBuffer().endScan(scanned);
         }
 
         return megaTable;
@@ -1296,7 +1472,7 @@ public class Database {
                     objects and then retrieve the object that is being sorted using the index value calculated before.
                     If other portion of code doesn't make sense, look up insertion sort algo
              */
-            while( (iterator > -1) && records.get(iterator).compare(current.getData().get(index), records.get(iterator).getData().get(index)) > 0){
+            while( (iterator > -1) && records.get(iterator).compare(current.getValues().get(index), records.get(iterator).getValues().get(index)) > 0){
                 records.set(iterator+1, records.get(iterator));
                 iterator--;
             }
@@ -1352,7 +1528,7 @@ public class Database {
                 validRecords = megaTable;
             } else { // if WHERE exists, only take the valid ones
                 for (Record r : megaTable) {
-                    if(query.getWhereTree().includeRow(r.getData(), megaSchema)) {
+                    if(query.getWhereTree().includeRow(r.getValues(), megaSchema)) {
                         validRecords.add(r);
                     }
                 }
@@ -1393,7 +1569,7 @@ public class Database {
             // adjusting max size of each column based on char len of entries
             for(Record record : validRecords) {
                 for (int i = 0; i < numCol; i++) {
-                    int strLen = String.valueOf(record.getData().get(selectedColIdx.get(i))).length();
+                    int strLen = String.valueOf(record.getValues().get(selectedColIdx.get(i))).length();
                     if (maxColLen[i] < strLen) {
                         maxColLen[i] = strLen;
                     }
@@ -1432,10 +1608,10 @@ public class Database {
                 Object[] rowArgs = new Object[numCol];
                 for (int j = 0; j < numCol; j++) {
                     row += "|%" + String.valueOf(maxColLen[j] + 2) + "s";
-                    if (validRecords.get(i).getData().get(selectedColIdx.get(j)) == null) {
+                    if (validRecords.get(i).getValues().get(selectedColIdx.get(j)) == null) {
                         rowArgs[j] = "null";
                     } else {
-                        rowArgs[j] = validRecords.get(i).getData().get(selectedColIdx.get(j)).toString();
+                        rowArgs[j] = validRecords.get(i).getValues().get(selectedColIdx.get(j)).toString();
                     }
 
                 }
@@ -1491,6 +1667,25 @@ public class Database {
                 System.out.print("\t");
             }
             System.out.println(String.format("Pages: %d", tables.get(name).getNumPages()));
+            if (catalog.getSchema().get(name).isCompressed()) {
+                if (printIndented) {
+                    System.out.print("\t");
+                }
+                double ratio = manager.getBuffer().getCompressionRatio(tables.get(name));
+                if (ratio == 0) {
+                    System.out.println("Compression ratio: n/a (no pages written yet)");
+                } else {
+                    System.out.println(String.format("Compression ratio: %.2f", ratio));
+                }
+            }
+            int bufferQuota = catalog.getSchema().get(name).getBufferQuota();
+            if (bufferQuota > 0) {
+                if (printIndented) {
+                    System.out.print("\t");
+                }
+                System.out.println(String.format("Buffer quota: %d pages (%d buffered)", bufferQuota,
+                        manager.getBuffer().getBufferedPages(tables.get(name).getTableID())));
+            }
             if (printIndented) {
                 System.out.print("\t");
             }
@@ -1500,13 +1695,18 @@ public class Database {
             List<Integer> pageIds = table.getPages(); // list of pageIds
             int count = 0;
             for (int i = 0; i < numPages; i++) {
-                count += manager.getBuffer().getPage(table, pageIds.get(i)).getContents().size();
+                Page page = manager.getBuffer().getPage(table, pageIds.get(i));
+                count += page.getContents().size();
+                manager.getBuffer().releasePage(table, page);
             }
             System.out.println(String.format("Records: %d", count));
             return true;
         } catch (NoSuchTableException e) {
             System.err.println(e);
             return false;
+        } catch (IOException e) {
+            System.err.println(e);
+            return false;
         }
     }
 
@@ -1514,6 +1714,29 @@ public class Database {
         System.out.println(String.format("DB location: %s", dbLoc));
         System.out.println(String.format("Page Size: %d", pageSize));
         System.out.println(String.format("Buffer Size: %d", bufferSize));
+        PageBuffer buffer = manager.getBuffer();
+        System.out.println(String.format("Buffer Policy: %s (hits: %d, misses: %d)",
+                buffer.getReplacementPolicy().getName(), buffer.getHits(), buffer.getMisses()));
+        if (buffer.isFlusherRunning()) {
+            System.out.println(String.format("Flusher: dirty ratio %.2f (background flushes: %d, foreground stalls: %d)",
+                    buffer.getDirtyRatio(), buffer.getBackgroundFlushes(), buffer.getForegroundStalls()));
+        } else {
+            System.out.println(String.format("Flusher: off (foreground stalls: %d)", buffer.getForegroundStalls()));
+        }
+        if (buffer.getReadAheadWindow() > 0) {
+            System.out.println(String.format("Read ahead: %d pages (pages read ahead: %d)",
+                    buffer.getReadAheadWindow(), buffer.getReadAheadPages()));
+        }
+        WriteAheadLog log = buffer.getLog();
+        if (log != null) {
+            System.out.println(String.format("Log: group commit %d, delay %d ms (commits: %d, forces: %d, size: %d bytes)",
+                    log.getGroupCommit(), log.getGroupDelayMillis(), log.getCommits(), log.getForces(), log.getSize()));
+        }
+        if (buffer.isCheckpointing()) {
+            System.out.println(String.format("Checkpoints: every %d s or %d KB of log (checkpoints: %d, pages written: %d)",
+                    buffer.getCheckpointMillis() / 1000, buffer.getCheckpointLogBytes() / 1024,
+                    buffer.getCheckpoints(), buffer.getCheckpointWrites()));
+        }
         System.out.println("Tables: ");
         HashMap<String, SchemaTable> schema = catalog.getSchema();
         for (String name : schema.keySet()) {
@@ -1527,6 +1750,44 @@ public class Database {
         return true; // should always happen only looking at existing tables.
     }
 
+    /**
+     * prints the page buffer counters of every table and of the buffer as a whole
+     * @param reset     true to set the counters back to 0 once they are printed
+     * @return
+     */
+    public boolean displayStats(boolean reset) {
+        PageBuffer buffer = manager.getBuffer();
+        // one snapshot so the lines add up while the flusher and read ahead keep running
+        synchronized (buffer) {
+            BufferStats total = buffer.getTotalStats();
+            System.out.println(String.format("Buffer: %d of %d pages in use (%.1f%%), %d dirty",
+                    buffer.getOccupancy(), buffer.getBufferSize(),
+                    100.0 * buffer.getOccupancy() / buffer.getBufferSize(), buffer.getDirtyPages()));
+            System.out.println(String.format("Hit ratio: %.3f (hits: %d, misses: %d)",
+                    total.getHitRatio(), total.getHits(), total.getMisses()));
+            System.out.println(String.format("Evictions: %d, write backs: %d, bytes read: %d, bytes written: %d",
+                    total.getEvictions(), total.getWriteBacks(), total.getBytesRead(), total.getBytesWritten()));
+            System.out.println(String.format("I/O buffers: %d allocated, %d pooled",
+                    buffer.getBufferPool().getAllocations(), buffer.getBufferPool().getFreeBuffers()));
+            System.out.println(String.format("%-20s %8s %10s %10s %10s %11s %12s %14s", "Table", "Pages",
+                    "Hits", "Misses", "Evictions", "Write backs", "Bytes read", "Bytes written"));
+            ArrayList<String> names = new ArrayList<>(tables.keySet());
+            names.sort(null);
+            for (String name : names) {
+                int tableID = tables.get(name).getTableID();
+                BufferStats stats = buffer.getTableStats(tableID);
+                System.out.println(String.format("%-20s %8d %10d %10d %10d %11d %12d %14d", name,
+                        buffer.getBufferedPages(tableID), stats.getHits(), stats.getMisses(), stats.getEvictions(),
+                        stats.getWriteBacks(), stats.getBytesRead(), stats.getBytesWritten()));
+            }
+            if (reset) {
+                buffer.resetStats();
+                System.out.println("Counters reset");
+            }
+        }
+        return true;
+    }
+
     public Catalog getCatalog() {
         return catalog;
     }
@@ -0,0 +1,228 @@
+package database;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Summary of every page of a table: the bytes still free in the page and the first and last primary key on it.
+ * <p>
+ * Records are kept in primary key order across the pages of a table, so the keys tell an insert which page a
+ * record belongs on without reading the pages before it. The pages are also kept ordered by their last key, so
+ * finding that page takes a lookup instead of a walk over the page order. The map is saved in its own file next
+ * to the table file and rebuilt from the pages if that file is missing or does not match the table.
+ */
+class FreeSpaceMap {
+
+    /**
+     * summary of one page, the keys are null if the page has no records
+     */
+    static class Entry {
+        int freeBytes;
+        Object firstKey;
+        Object lastKey;
+    }
+
+    // pageID -> summary of the page
+    private final HashMap<Integer, Entry> entries = new HashMap<>();
+
+    // order of the primary keys, the order records are kept in
+    private final Comparator<Object> keyOrder;
+
+    // last key -> pageID of every page with records
+    private final TreeMap<Object, Integer> byLastKey;
+
+    // true if the map changed since it was loaded or saved
+    private boolean dirty = false;
+
+    /**
+     * @param keyOrder  order of the primary keys
+     */
+    FreeSpaceMap(Comparator<Object> keyOrder) {
+        this.keyOrder = keyOrder;
+        this.byLastKey = new TreeMap<>(keyOrder);
+    }
+
+    /**
+     * @param pageID
+     * @return summary of the page, null if the page is not in the map
+     */
+    Entry get(int pageID) {
+        return entries.get(pageID);
+    }
+
+    /**
+     * records the current state of a page
+     * @param page
+     * @param keyIdx    index of the primary key in the records
+     */
+    void update(Page page, int keyIdx) {
+        Entry entry = entries.computeIfAbsent(page.getPageID(), id -> new Entry());
+        if (entry.lastKey != null) {
+            byLastKey.remove(entry.lastKey, page.getPageID());
+        }
+        entry.freeBytes = page.getFreeBytes();
+        if (page.getContents().isEmpty()) {
+            entry.firstKey = null;
+            entry.lastKey = null;
+        } else {
+            entry.firstKey = page.getContents().get(0).getValues().get(keyIdx);
+            entry.lastKey = page.getContents().get(page.getContents().size() - 1).getValues().get(keyIdx);
+            byLastKey.put(entry.lastKey, page.getPageID());
+        }
+        dirty = true;
+    }
+
+    /**
+     * finds the page a record belongs on, the first page in key order whose last key the record goes at or before
+     * if the record would also fit between that page and the one before it, and only the page before has room for
+     * it, the record goes at the end of the page before instead of splitting the full one
+     * @param key   primary key of the record
+     * @param size  bytes the record takes in a page, its slot included
+     * @return ID of the page, -1 if the record goes after every key
+     */
+    int findPage(Object key, int size) {
+        Map.Entry<Object, Integer> next = byLastKey.ceilingEntry(key);
+        if (next == null) {
+            return -1;
+        }
+        Entry entry = entries.get(next.getValue());
+        if (entry.freeBytes < size && keyOrder.compare(key, entry.firstKey) < 0) {
+            Map.Entry<Object, Integer> previous = byLastKey.lowerEntry(key);
+            if (previous != null && entries.get(previous.getValue()).freeBytes >= size) {
+                return previous.getValue();
+            }
+        }
+        return next.getValue();
+    }
+
+    int getNumPages() {
+        return entries.size();
+    }
+
+    boolean isDirty() {
+        return dirty;
+    }
+
+    /**
+     * writes the map to a file, replacing what was there
+     * @param path
+     * @param keyType   type key (see Catalog.getTypeKey) of the primary key
+     * @throws IOException
+     */
+    void save(Path path, int keyType) throws IOException {
+        int size = Integer.BYTES;
+        for (Entry entry : entries.values()) {
+            size += 2 * Integer.BYTES + 1 + keySize(entry.firstKey) + keySize(entry.lastKey);
+        }
+        ByteBuffer bytebuff = ByteBuffer.allocate(size);
+        bytebuff.putInt(entries.size());
+        for (Map.Entry<Integer, Entry> e : entries.entrySet()) {
+            Entry entry = e.getValue();
+            bytebuff.putInt(e.getKey());
+            bytebuff.putInt(entry.freeBytes);
+            if (entry.firstKey == null) {
+                bytebuff.put((byte) 0);
+            } else {
+                bytebuff.put((byte) 1);
+                putKey(bytebuff, entry.firstKey, keyType);
+                putKey(bytebuff, entry.lastKey, keyType);
+            }
+        }
+        bytebuff.flip();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (bytebuff.hasRemaining()) {
+                channel.write(bytebuff);
+            }
+        }
+        dirty = false;
+    }
+
+    /**
+     * reads a map saved with save
+     * @param path
+     * @param keyType   type key of the primary key
+     * @param keyOrder  order of the primary keys
+     * @return the map, null if the file does not exist
+     * @throws IOException
+     */
+    static FreeSpaceMap load(Path path, int keyType, Comparator<Object> keyOrder) throws IOException {
+        if (!Files.exists(path)) {
+            return null;
+        }
+        FreeSpaceMap map = new FreeSpaceMap(keyOrder);
+        ByteBuffer bytebuff = ByteBuffer.wrap(Files.readAllBytes(path));
+        int numPages = bytebuff.getInt();
+        for (int i = 0; i < numPages; i++) {
+            int pageID = bytebuff.getInt();
+            Entry entry = new Entry();
+            entry.freeBytes = bytebuff.getInt();
+            if (bytebuff.get() == 1) {
+                entry.firstKey = getKey(bytebuff, keyType);
+                entry.lastKey = getKey(bytebuff, keyType);
+                map.byLastKey.put(entry.lastKey, pageID);
+            }
+            map.entries.put(pageID, entry);
+        }
+        return map;
+    }
+
+    private static int keySize(Object key) {
+        if (key == null) {
+            return 0;
+        } else if (key instanceof Integer) {
+            return Integer.BYTES;
+        } else if (key instanceof Double) {
+            return Double.BYTES;
+        } else if (key instanceof Boolean) {
+            return 1;
+        }
+        return Integer.BYTES + ((String) key).length() * Character.BYTES;
+    }
+
+    private static void putKey(ByteBuffer bytebuff, Object key, int keyType) {
+        switch (keyType) {
+            case 0: // int
+                bytebuff.putInt((Integer) key);
+                break;
+            case 1: // double
+                bytebuff.putDouble((Double) key);
+                break;
+            case 2: // boolean
+                bytebuff.put((byte) ((Boolean) key ? 1 : 0));
+                break;
+            default: // char and varchar
+                String string = (String) key;
+                bytebuff.putInt(string.length());
+                for (int c = 0; c < string.length(); c++) {
+                    bytebuff.putChar(string.charAt(c));
+                }
+        }
+    }
+
+    private static Object getKey(ByteBuffer bytebuff, int keyType) {
+        switch (keyType) {
+            case 0: // int
+                return bytebuff.getInt();
+            case 1: // double
+                return bytebuff.getDouble();
+            case 2: // boolean
+                return bytebuff.get() == 1;
+            default: // char and varchar
+                int len = bytebuff.getInt();
+                char[] chars = new char[len];
+                for (int c = 0; c < len; c++) {
+                    chars[c] = bytebuff.getChar();
+                }
+                return new String(chars);
+        }
+    }
+}
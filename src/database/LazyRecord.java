@@ -0,0 +1,117 @@
+package database;
+
+import java.nio.ByteBuffer;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A record that stays in its on disk form until its values are read.
+ * Values read through getValues are decoded one column at a time, so a where clause or a projection only pays
+ * for the columns it looks at. getData decodes every column and from then on the record behaves like a record
+ * built from a list of values.
+ */
+class LazyRecord extends Record {
+
+    private final RecordFormat format;
+
+    // encoded record, position 0 is the start of the record, never written to
+    private final ByteBuffer bytes;
+
+    // type key (see Catalog.getTypeKey) of each column
+    private final int[] typeKeys;
+
+    // position of each column value in bytes, -1 if the value is null. found on first access
+    private int[] positions;
+
+    // values decoded so far
+    private Object[] values;
+
+    // every value, set once the record is fully decoded
+    private ArrayList<Object> data;
+
+    private ArrayList<Integer> bitMap;
+
+    private final List<Object> view = new AbstractList<Object>() {
+        @Override
+        public Object get(int index) {
+            return getValue(index);
+        }
+
+        @Override
+        public int size() {
+            return typeKeys.length;
+        }
+    };
+
+    /**
+     * @param format    format the record is encoded in
+     * @param bytes     the encoded record, it must not change while the record is in use
+     * @param typeKeys  type key of each column
+     */
+    LazyRecord(RecordFormat format, ByteBuffer bytes, int[] typeKeys) {
+        this.format = format;
+        this.bytes = bytes;
+        this.typeKeys = typeKeys;
+    }
+
+    @Override
+    public ArrayList<Object> getData() {
+        if (data == null) {
+            ArrayList<Object> decoded = new ArrayList<>(typeKeys.length);
+            bitMap = new ArrayList<>(typeKeys.length);
+            for (int i = 0; i < typeKeys.length; i++) {
+                Object value = getValue(i);
+                decoded.add(value);
+                bitMap.add(value == null ? 0 : 1);
+            }
+            data = decoded;
+            values = null;
+        }
+        return data;
+    }
+
+    @Override
+    public ArrayList<Integer> getBitMap() {
+        getData();
+        return bitMap;
+    }
+
+    @Override
+    public List<Object> getValues() {
+        if (data != null) {
+            return data;
+        }
+        return view;
+    }
+
+    /**
+     * @return the record as it is stored, null once it is decoded since its values can then be changed
+     */
+    ByteBuffer getEncoded() {
+        return data == null ? bytes.duplicate() : null;
+    }
+
+    /**
+     * @return bytes the record takes on disk, -1 once it is decoded since its values can then be changed
+     */
+    int getEncodedSize() {
+        return data == null ? bytes.limit() : -1;
+    }
+
+    private Object getValue(int column) {
+        if (data != null) {
+            return data.get(column);
+        }
+        if (positions == null) {
+            // walks the record once to find where each value starts, without decoding any value
+            positions = new int[typeKeys.length];
+            values = new Object[typeKeys.length];
+            format.findColumns(bytes, 0, typeKeys, positions);
+        }
+        if (values[column] == null && positions[column] != -1) {
+            values[column] = format.readValue(bytes, positions[column], typeKeys[column]);
+        }
+        return values[column];
+    }
+}
@@ -0,0 +1,285 @@
+package database;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+
+/**
+ * Brings the table files and the catalog up to date with the write ahead log of a database that was not shut
+ * down cleanly. It runs before the catalog is read.
+ * <p>
+ * The log starts at the oldest change that was not in a table file at the last checkpoint. The entries after the
+ * last commit belong to a statement that never ended, pages it spilled get back what the table file held before the
+ * statement, and a table it replaced by a new definition under a new ID keeps its files while those of the new table
+ * are deleted. Then every committed entry is replayed in order: pages are written as logged, tables created or
+ * changed replace those in the catalog, added pages go back into their page orders and dropped tables are deleted
+ * again. Pages logged before the checkpoint are skipped unless its dirty page table says the table file is missing
+ * the change. The catalog was written at the checkpoint, so the schema and page order changes logged before it are
+ * skipped as well. The catalog may also hold changes logged after it if the database stopped between writing the
+ * catalog and logging the checkpoint: a table is only replaced by a definition with both its ID and name, pages get
+ * their IDs in the order they are added to a table, so an added page is skipped if its table already has that many
+ * pages. Page maps, page counts and the catalog are written from what the log left, free space maps are rebuilt on
+ * first insert. Once everything is forced to disk the log is cleared.
+ */
+public class LogRecovery {
+
+    private final String dbLoc;
+
+    private Catalog catalog;
+
+    private PageBuffer buffer;
+
+    // tables of the catalog as the log left them
+    private final HashMap<String, Table> tables = new HashMap<>();
+
+    // page table key -> LSN of the oldest change not in the table file, from the dirty page table of the last
+    // checkpoint
+    private final HashMap<Long, Long> dirtyPages = new HashMap<>();
+
+    // tables dropped while replaying, their pages are all written again
+    private final HashSet<Integer> dropped = new HashSet<>();
+
+    private LogRecovery(String dbLoc) {
+        this.dbLoc = dbLoc;
+    }
+
+    /**
+     * replays the write ahead log of a database if it holds any entry
+     * @param dbLoc
+     * @return number of commits replayed
+     * @throws IOException
+     */
+    public static int recover(String dbLoc) throws IOException {
+        Path path = WriteAheadLog.logPath(dbLoc);
+        if (!Files.exists(path) || Files.size(path) <= WriteAheadLog.HEADER_SIZE) {
+            return 0;
+        }
+        return new LogRecovery(dbLoc).replay(path);
+    }
+
+    private int replay(Path path) throws IOException {
+        long[] header = WriteAheadLog.readHeader(path);
+        int pageSize = (int) header[1];
+
+        int[] lastCommit = {-1};
+        int[] lastCheckpoint = {-1};
+        int[] commits = {0};
+        long valid = WriteAheadLog.readEntries(path, (index, start, kind, payload) -> {
+            if (kind == WriteAheadLog.ENTRY_COMMIT) {
+                lastCommit[0] = index;
+                commits[0]++;
+            } else if (kind == WriteAheadLog.ENTRY_CHECKPOINT) {
+                lastCheckpoint[0] = index;
+                dirtyPages.clear();
+                while (payload.available() > 0) {
+                    payload.readByte();
+                    long key = PageBuffer.pageKey(payload.readInt(), payload.readInt());
+                    dirtyPages.put(key, payload.readLong());
+                }
+            }
+        });
+
+        catalog = new Catalog(dbLoc, pageSize);
+        if (new File(dbLoc + "\\Catalog").exists()) {
+            catalog.restoreSchema();
+        }
+        loadTables();
+        buffer = new PageBuffer(catalog, 1, dbLoc, catalog.getPageSize());
+
+        // pages the unfinished statement spilled go back to what they were before it, a table it replaced keeps
+        // its files and the files of the replacement are deleted
+        WriteAheadLog.readEntries(path, (index, start, kind, payload) -> {
+            if (index > lastCommit[0] && kind == WriteAheadLog.ENTRY_SPILL) {
+                apply(payload, true, -1);
+            } else if (index > lastCommit[0] && kind == WriteAheadLog.ENTRY_REPLACE) {
+                discardReplacement(payload);
+            }
+        });
+        WriteAheadLog.readEntries(path, (index, start, kind, payload) -> {
+            if (index <= lastCommit[0] && kind != WriteAheadLog.ENTRY_CHECKPOINT) {
+                apply(payload, false, index < lastCheckpoint[0] ? start : -1);
+            }
+        });
+
+        for (Table table : tables.values()) {
+            buffer.writePageIDSSize(table.getNumPages(), table.getTableID());
+            // pages changed since the free space map was saved
+            Files.deleteIfExists(PageBuffer.freeSpaceMapPath(dbLoc, table.getTableID()));
+        }
+        buffer.forceFiles();
+        // saves the page maps
+        buffer.purgeBuffer();
+        buffer.close();
+        catalog.extractTables(tables);
+        catalog.writeCatalog();
+
+        WriteAheadLog.clear(path, header[0] + valid, pageSize);
+        return commits[0];
+    }
+
+    /**
+     * builds the tables from the page orders in the catalog
+     */
+    private void loadTables() {
+        tables.clear();
+        for (SchemaTable schemaTable : catalog.getSchema().values()) {
+            Table table = new Table(schemaTable.getTableName(), schemaTable.getTableID());
+            table.getPages().addAll(schemaTable.getPageOrder());
+            tables.put(schemaTable.getTableName(), table);
+        }
+    }
+
+    /**
+     * applies the records of an entry
+     * @param payload
+     * @param undo  true to write the old contents of spilled pages, false to replay everything else
+     * @param start LSN the entry starts at if it is older than the last checkpoint, -1 otherwise, only the pages
+     *              of entries older than the checkpoint are replayed
+     * @throws IOException
+     */
+    private void apply(DataInputStream payload, boolean undo, long start) throws IOException {
+        while (payload.available() > 0) {
+            byte record = payload.readByte();
+            switch (record) {
+                case WriteAheadLog.RECORD_PAGE:
+                case WriteAheadLog.RECORD_UNDO: {
+                    int tableID = payload.readInt();
+                    int pageID = payload.readInt();
+                    int length = payload.readInt();
+                    if (length < 0) {
+                        break; // the page was never written before
+                    }
+                    byte[] page = new byte[length];
+                    payload.readFully(page);
+                    if (undo == (record == WriteAheadLog.RECORD_UNDO) && catalog.getTableName(tableID) != null
+                            && !isWritten(tableID, pageID, start)) {
+                        buffer.writeImage(tableID, pageID, ByteBuffer.wrap(page));
+                    }
+                    break;
+                }
+                case WriteAheadLog.RECORD_PAGE_ORDER: {
+                    int tableID = payload.readInt();
+                    int numPages = payload.readInt();
+                    ArrayList<Integer> pageOrder = new ArrayList<>(numPages);
+                    for (int i = 0; i < numPages; i++) {
+                        pageOrder.add(payload.readInt());
+                    }
+                    String name = catalog.getTableName(tableID);
+                    if (name != null && start == -1) {
+                        tables.get(name).getPages().clear();
+                        tables.get(name).getPages().addAll(pageOrder);
+                    }
+                    break;
+                }
+                case WriteAheadLog.RECORD_PAGE_INSERT: {
+                    int tableID = payload.readInt();
+                    int index = payload.readInt();
+                    int pageID = payload.readInt();
+                    String name = catalog.getTableName(tableID);
+                    if (name != null && start == -1) {
+                        ArrayList<Integer> pages = tables.get(name).getPages();
+                        if (pageID == pages.size() && index <= pages.size()) {
+                            pages.add(index, pageID);
+                        }
+                    }
+                    break;
+                }
+                case WriteAheadLog.RECORD_TABLE: {
+                    byte[] definition = new byte[payload.readInt()];
+                    payload.readFully(definition);
+                    if (start != -1) {
+                        break;
+                    }
+                    SchemaTable schemaTable = catalog.restoreTable(definition);
+                    // a new table starts without pages
+                    if (schemaTable != null && !tables.containsKey(schemaTable.getTableName())) {
+                        tables.put(schemaTable.getTableName(),
+                                new Table(schemaTable.getTableName(), schemaTable.getTableID()));
+                    }
+                    break;
+                }
+                case WriteAheadLog.RECORD_CATALOG: {
+                    byte[] image = new byte[payload.readInt()];
+                    payload.readFully(image);
+                    if (start == -1) {
+                        catalog.restoreSchema(image);
+                        loadTables();
+                    }
+                    break;
+                }
+                case WriteAheadLog.RECORD_DROP: {
+                    int tableID = payload.readInt();
+                    if (start == -1) {
+                        drop(tableID);
+                    }
+                    break;
+                }
+                default:
+                    throw new IOException(String.format("UNKNOWN RECORD TYPE %d IN THE WRITE AHEAD LOG", record));
+            }
+        }
+    }
+
+    /**
+     * @param tableID
+     * @param pageID
+     * @param start     LSN the entry logging the page starts at if it is older than the last checkpoint, -1 otherwise
+     * @return true if the table file already held the page when the last checkpoint was taken
+     */
+    private boolean isWritten(int tableID, int pageID, long start) {
+        if (start == -1 || dropped.contains(tableID)) {
+            return false;
+        }
+        Long recLSN = dirtyPages.get(PageBuffer.pageKey(tableID, pageID));
+        return recLSN == null || start < recLSN;
+    }
+
+    /**
+     * deletes the files of a table that replaced another in a statement that never ended, the catalog never had it
+     * @param payload   records of an ENTRY_REPLACE entry
+     * @throws IOException
+     */
+    private void discardReplacement(DataInputStream payload) throws IOException {
+        while (payload.available() > 0) {
+            byte record = payload.readByte();
+            if (record == WriteAheadLog.RECORD_DROP) {
+                payload.readInt();
+            } else if (record == WriteAheadLog.RECORD_TABLE) {
+                byte[] definition = new byte[payload.readInt()];
+                payload.readFully(definition);
+                // the definition starts with the table ID
+                int tableID = ByteBuffer.wrap(definition).getInt();
+                TableFileCache.deleteFiles(dbLoc, tableID);
+                Files.deleteIfExists(PageBuffer.pageMapPath(dbLoc, tableID));
+                Files.deleteIfExists(PageBuffer.freeSpaceMapPath(dbLoc, tableID));
+            } else {
+                throw new IOException(String.format("UNKNOWN RECORD TYPE %d IN THE WRITE AHEAD LOG", record));
+            }
+        }
+    }
+
+    /**
+     * deletes a dropped table again, its files may already be gone
+     * @param tableID
+     * @throws IOException
+     */
+    private void drop(int tableID) throws IOException {
+        dropped.add(tableID);
+        String name = catalog.getTableName(tableID);
+        if (name != null) {
+            Table table = tables.remove(name);
+            buffer.removeTable(table);
+            catalog.getSchema().remove(name);
+            catalog.getTableNameSchema().remove(tableID);
+        }
+        TableFileCache.deleteFiles(dbLoc, tableID);
+        Files.deleteIfExists(PageBuffer.pageMapPath(dbLoc, tableID));
+        Files.deleteIfExists(PageBuffer.freeSpaceMapPath(dbLoc, tableID));
+    }
+}
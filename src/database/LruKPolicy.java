@@ -0,0 +1,130 @@
+package database;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.function.LongPredicate;
+
+/**
+ * LRU-K replacement (O'Neil, O'Neil and Weikum). Evicts the page whose K-th most recent access is the oldest.
+ * Pages with fewer than K accesses count as infinitely old and go first, oldest last access first,
+ * so pages touched once by a scan are evicted before pages that are looked up repeatedly.
+ * Access history of evicted pages is remembered for a while so a page that comes back is not treated as new.
+ */
+public class LruKPolicy implements ReplacementPolicy {
+
+    private final int k;
+
+    private long clock = 0;
+
+    /**
+     * access times of one page, most recent first
+     */
+    private static class History {
+        private final long key;
+        private final long[] times;
+
+        private History(long key, int k) {
+            this.key = key;
+            this.times = new long[k];
+        }
+
+        private void access(long time) {
+            System.arraycopy(times, 0, times, 1, times.length - 1);
+            times[0] = time;
+        }
+
+        // 0 when the page has been accessed fewer than k times
+        private long kthTime() {
+            return times[times.length - 1];
+        }
+    }
+
+    // histories of buffered pages ordered by eviction priority, first is the next victim
+    private final TreeSet<History> candidates = new TreeSet<>((h1, h2) -> {
+        int cmp = Long.compare(h1.kthTime(), h2.kthTime());
+        if (cmp == 0) {
+            cmp = Long.compare(h1.times[0], h2.times[0]);
+        }
+        return cmp != 0 ? cmp : Long.compare(h1.key, h2.key);
+    });
+
+    private final HashMap<Long, History> buffered = new HashMap<>();
+
+    // histories of evicted pages, oldest first
+    private final LinkedHashMap<Long, History> retained;
+
+    public LruKPolicy(int bufferSize, int k) {
+        this.k = k;
+        int retainedSize = Math.max(1, bufferSize);
+        retained = new LinkedHashMap<Long, History>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, History> eldest) {
+                return size() > retainedSize;
+            }
+        };
+    }
+
+    public void pageAdded(long key) {
+        History history = buffered.get(key);
+        if (history != null) {
+            pageAccessed(key);
+            return;
+        }
+        history = retained.remove(key);
+        if (history == null) {
+            history = new History(key, k);
+        }
+        history.access(++clock);
+        buffered.put(key, history);
+        candidates.add(history);
+    }
+
+    public void pageAccessed(long key) {
+        History history = buffered.get(key);
+        if (history == null) {
+            return;
+        }
+        candidates.remove(history);
+        history.access(++clock);
+        candidates.add(history);
+    }
+
+    public void pageRemoved(long key) {
+        History history = buffered.remove(key);
+        if (history != null) {
+            candidates.remove(history);
+        }
+    }
+
+    public long evict(LongPredicate evictable) {
+        for (History victim : candidates) {
+            if (evictable.test(victim.key)) {
+                candidates.remove(victim);
+                buffered.remove(victim.key);
+                retained.put(victim.key, victim);
+                return victim.key;
+            }
+        }
+        return NO_VICTIM;
+    }
+
+    public long[] nextVictims(int count, LongPredicate evictable) {
+        long[] victims = new long[count];
+        int found = 0;
+        for (Iterator<History> histories = candidates.iterator(); histories.hasNext() && found < count; ) {
+            History history = histories.next();
+            if (evictable.test(history.key)) {
+                victims[found++] = history.key;
+            }
+        }
+        return Arrays.copyOf(victims, found);
+    }
+
+    public String getName() {
+        return "lru-" + k;
+    }
+}
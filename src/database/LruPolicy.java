@@ -0,0 +1,58 @@
+package database;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.function.LongPredicate;
+
+/**
+ * Least recently used replacement. Keys are kept in recency order, least recently used first,
+ * so every operation is constant time.
+ */
+public class LruPolicy implements ReplacementPolicy {
+
+    private final LinkedHashSet<Long> recency = new LinkedHashSet<>();
+
+    public void pageAdded(long key) {
+        recency.remove(key);
+        recency.add(key);
+    }
+
+    public void pageAccessed(long key) {
+        if (recency.remove(key)) {
+            recency.add(key);
+        }
+    }
+
+    public void pageRemoved(long key) {
+        recency.remove(key);
+    }
+
+    public long evict(LongPredicate evictable) {
+        Iterator<Long> lru = recency.iterator();
+        while (lru.hasNext()) {
+            long key = lru.next();
+            if (evictable.test(key)) {
+                lru.remove();
+                return key;
+            }
+        }
+        return NO_VICTIM;
+    }
+
+    public long[] nextVictims(int count, LongPredicate evictable) {
+        long[] victims = new long[count];
+        int found = 0;
+        for (Iterator<Long> lru = recency.iterator(); lru.hasNext() && found < count; ) {
+            long key = lru.next();
+            if (evictable.test(key)) {
+                victims[found++] = key;
+            }
+        }
+        return Arrays.copyOf(victims, found);
+    }
+
+    public String getName() {
+        return "lru";
+    }
+}
@@ -0,0 +1,128 @@
+package database;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Accesses table files through memory mapped regions instead of read and write calls.
+ * <p>
+ * Each segment file of a table is split into regions of pagesPerRegion pages that are mapped on first use, so the
+ * OS page cache backs pages that are not in the PageBuffer. Every region is mapped one page (plus the page count)
+ * longer than its size, that way a page starting in a region always lies completely inside that region's mapping.
+ * Mapping a region past the end of the file grows the file, which is how new pages from splitPage get room.
+ * <p>
+ * Reads return views of the mapping, the page bytes are not copied.
+ */
+public class MappedTableFileCache extends TableFileCache {
+
+    private final int pageSize;
+
+    private final long regionSize;
+
+    // segment key (see PageBuffer.pageKey) -> mapped regions of the segment file, null for regions not mapped yet
+    private final HashMap<Long, ArrayList<MappedByteBuffer>> regions = new HashMap<>();
+
+    public MappedTableFileCache(String dbLoc, int maxOpenFiles, int pageSize, int segmentPages, int pagesPerRegion) {
+        super(dbLoc, maxOpenFiles, pageSize, segmentPages);
+        this.pageSize = pageSize;
+        this.regionSize = (long) pageSize * pagesPerRegion;
+    }
+
+    /**
+     * returns a view of the mapping starting at position, the region is mapped if needed
+     * @param tableID
+     * @param position
+     * @param length    at most pageSize + the page count
+     * @return view with length bytes remaining
+     * @throws IOException
+     */
+    private ByteBuffer view(int tableID, long position, int length) throws IOException {
+        if (length > pageSize + Integer.BYTES) {
+            throw new IOException(String.format("CAN NOT MAP %d BYTES, MORE THAN A PAGE", length));
+        }
+        int segment = segmentOf(position);
+        position -= segmentStart(segment);
+        int regionIdx = (int) (position / regionSize);
+        ArrayList<MappedByteBuffer> segmentRegions = regions.computeIfAbsent(PageBuffer.pageKey(tableID, segment),
+                key -> new ArrayList<>());
+        while (segmentRegions.size() <= regionIdx) {
+            segmentRegions.add(null);
+        }
+        MappedByteBuffer region = segmentRegions.get(regionIdx);
+        if (region == null) {
+            FileChannel channel = getChannel(tableID, segment);
+            // no page starts in a region and ends in the next segment, the last region stops at the segment end
+            long segmentLength = segmentEnd(segment) - segmentStart(segment);
+            long mapped = Math.min(regionSize + pageSize + Integer.BYTES, segmentLength - regionIdx * regionSize);
+            region = channel.map(FileChannel.MapMode.READ_WRITE, regionIdx * regionSize, mapped);
+            segmentRegions.set(regionIdx, region);
+        }
+        int offset = (int) (position - regionIdx * regionSize);
+        ByteBuffer view = region.duplicate();
+        view.position(offset);
+        view.limit(offset + length);
+        return view.slice();
+    }
+
+    @Override
+    public ByteBuffer read(int tableID, long position, int length) throws IOException {
+        return view(tableID, position, length);
+    }
+
+    /**
+     * returns a view of the mapping like read, the pool is not used
+     */
+    @Override
+    public ByteBuffer read(int tableID, long position, int length, BufferPool pool) throws IOException {
+        return view(tableID, position, length);
+    }
+
+    @Override
+    public int read(int tableID, ByteBuffer buffer, long position) throws IOException {
+        int length = buffer.remaining();
+        buffer.put(view(tableID, position, length));
+        return length;
+    }
+
+    @Override
+    public void write(int tableID, ByteBuffer buffer, long position) throws IOException {
+        view(tableID, position, buffer.remaining()).put(buffer);
+    }
+
+    /**
+     * forces every mapped region to disk
+     * @throws IOException
+     */
+    @Override
+    public void flush() throws IOException {
+        for (ArrayList<MappedByteBuffer> segmentRegions : regions.values()) {
+            for (MappedByteBuffer region : segmentRegions) {
+                if (region != null) {
+                    region.force();
+                }
+            }
+        }
+    }
+
+    /**
+     * forgets the mappings of a table before its file is deleted, they are unmapped once garbage collected
+     * @param tableID
+     * @throws IOException
+     */
+    @Override
+    public void close(int tableID) throws IOException {
+        regions.keySet().removeIf(key -> (int) (key >>> 32) == tableID);
+        super.close(tableID);
+    }
+
+    @Override
+    public void closeAll() throws IOException {
+        flush();
+        regions.clear();
+        super.closeAll();
+    }
+}
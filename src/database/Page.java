@@ -14,29 +14,81 @@ public class Page {
 
     private int pageSize;
 
+    // format the records are encoded in, used to work out how much of the page they take
+    private RecordFormat format;
+
+    // true if the page was changed since it was last read from or written to disk
+    private boolean dirty;
+
+    // true if the page was changed since it was last read from disk or written to the write ahead log
+    private boolean unlogged;
+
+    // bytes the page takes when written as a slotted page, kept up to date as records are added and removed
+    private int usedBytes;
+
     // Constructor 2
     // read page
-    public Page(ArrayList<Record> page, int num, int pageSize) {
+    public Page(ArrayList<Record> page, int num, int pageSize, RecordFormat format) {
         numRecords = num;
         contents = page;
         this.pageSize = pageSize;
+        this.format = format;
+        this.dirty = false;
+        this.usedBytes = calculatePageSize();
     }
 
     // Constructor 1
-    // initial creation of a page
-    public Page(int pageSize) {
+    // initial creation of a page, not on disk yet so it starts dirty
+    public Page(int pageSize, RecordFormat format) {
         numRecords = 0;
         contents = new ArrayList<>();
         this.pageSize = pageSize;
+        this.format = format;
+        this.dirty = true;
+        this.unlogged = true;
+        this.usedBytes = SlottedPage.HEADER_SIZE;
     }
 
     // adds a record to the page.
     public int addRecord(Record record) {
-        contents.add(record);
-        numRecords++;
+        insertRecord(contents.size(), record);
         return numRecords - 1;
     }
 
+    /**
+     * adds a record to the page before the record at the given index
+     * @param index
+     * @param record
+     */
+    public void insertRecord(int index, Record record) {
+        contents.add(index, record);
+        numRecords++;
+        usedBytes += SlottedPage.SLOT_SIZE + getRecordSize(record);
+        dirty = true;
+        unlogged = true;
+    }
+
+    /**
+     * @param index
+     * @return the record that was removed
+     */
+    public Record removeRecord(int index) {
+        Record record = contents.remove(index);
+        numRecords--;
+        usedBytes -= SlottedPage.SLOT_SIZE + getRecordSize(record);
+        dirty = true;
+        unlogged = true;
+        return record;
+    }
+
+    public void clearRecords() {
+        contents.clear();
+        numRecords = 0;
+        usedBytes = SlottedPage.HEADER_SIZE;
+        dirty = true;
+        unlogged = true;
+    }
+
     public int getPageID() {
         return pageID;
     }
@@ -46,13 +98,24 @@ public class Page {
     }
 
     public boolean isFull() {
-        int size = calculatePageSize();
-        if(size > pageSize){
+        if(usedBytes > pageSize){
             return true;
         }
         return false;
     }
 
+    /**
+     * @return bytes the page takes when written, pages of databases created before slotted pages take
+     *          one slot less per record
+     */
+    public int getUsedBytes() {
+        return usedBytes;
+    }
+
+    public int getFreeBytes() {
+        return pageSize - usedBytes;
+    }
+
 
     public ArrayList<Record> getContents() {
         return contents;
@@ -63,42 +126,34 @@ public class Page {
         return numRecords;
     }
 
+    /**
+     * adds up the size of every record, getUsedBytes gives the same result without walking the page
+     * @return bytes the page takes when written
+     */
     public int calculatePageSize() {
-        int cps = 0;
+        int cps = SlottedPage.HEADER_SIZE; // record count and heap start written at the start of the page
         for(Record r: this.contents){
-            ArrayList<Object> data = r.getData();
-            cps+=getRecordSize(data);
+            cps+=SlottedPage.SLOT_SIZE + getRecordSize(r);
         }
         return cps;
     }
 
-    public int getRecordSize(ArrayList<Object> data) {
-        int recSize = 0;
-        for(Object o: data){
-
-            if(o instanceof Integer){
-                recSize+= Integer.BYTES;
-            }
-
-            if(o instanceof Double){
-                recSize+= Double.BYTES;
-            }
-
-            //Stored as a int flag
-            if(o instanceof Boolean){
-                recSize+= Integer.BYTES;
-            }
+    public int getRecordSize(List<Object> data) {
+        return format.recordSize(data);
+    }
 
-            //char and varchar length time char
-            if(o instanceof String){
-                String s = (String) o;
-                //int len = Integer.parseInt(s);
-                int len = s.length();
-                recSize+= len*Character.BYTES;
+    /**
+     * @param record
+     * @return bytes the record takes when written, a record read from disk is not decoded to find out
+     */
+    public int getRecordSize(Record record) {
+        if (record instanceof LazyRecord) {
+            int size = ((LazyRecord) record).getEncodedSize();
+            if (size >= 0) {
+                return size;
             }
         }
-        recSize+=Integer.BYTES + (data.size()*Integer.BYTES); // accounting for null byte arraylist
-        return recSize;
+        return format.recordSize(record.getValues());
     }
 
 
@@ -110,6 +165,9 @@ public class Page {
     public void setContents(ArrayList<Record> contents) {
         this.contents = contents;
         this.numRecords = contents.size();
+        this.dirty = true;
+        this.unlogged = true;
+        this.usedBytes = calculatePageSize();
     }
 
 
@@ -117,6 +175,30 @@ public class Page {
         this.numRecords = numRecords;
     }
 
+    public boolean isDirty() {
+        return dirty;
+    }
+
+    /**
+     * marks the page as changed (needs to be written back) or as matching what is on disk
+     * @param dirty
+     */
+    public void setDirty(boolean dirty) {
+        this.dirty = dirty;
+    }
+
+    public boolean isUnlogged() {
+        return unlogged;
+    }
+
+    /**
+     * marks the page as written to the write ahead log, or as changed since
+     * @param unlogged
+     */
+    public void setUnlogged(boolean unlogged) {
+        this.unlogged = unlogged;
+    }
+
 
 
 }
@@ -1,24 +1,46 @@
 package database;
 
+import exception.BufferFullException;
+import exception.InvalidTableOptionException;
 
 import java.io.EOFException;
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.RandomAccessFile;
 import java.lang.reflect.Array;
+import java.nio.BufferOverflowException;
 import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.function.LongPredicate;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
 
 public class PageBuffer {
 
     //Command line argument to be used --- # of pages
     private int bufferSize;
-    //Buffer Arraylist
-    private ArrayList<Page> pages = new ArrayList<>();
-    // list of table objects that correspond to each page in pages list
-    private ArrayList<Table> tables = new ArrayList<>();
+    // page table, maps (tableID, pageID) key to the buffered page and the table it belongs to
+    private HashMap<Long, Frame> pageTable = new HashMap<>();
+    // picks the page to evict when the buffer is full
+    private ReplacementPolicy policy;
+    // tableID -> hits, misses, evictions and I/O of the pages of the table
+    private HashMap<Integer, BufferStats> tableStats = new HashMap<>();
+    // counters of tables that were dropped since the counters were reset
+    private BufferStats droppedStats = new BufferStats();
+    // tableID -> number of pages last written to (or read from) the start of the table file
+    private HashMap<Integer, Integer> writtenPageCounts = new HashMap<>();
+    // tableID -> pages the table file may hold, the pages after them were never written even if the file is
+    // longer (segments grow by whole extents of zeros and mapped files by whole regions)
+    private HashMap<Integer, Integer> filePages = new HashMap<>();
 
     private Catalog catalog;
 
@@ -26,44 +48,938 @@ public class PageBuffer {
 
     private int pageSize;
 
+    // most table files kept open at once
+    private static final int MAX_OPEN_FILES = 64;
+
+    // open table files, shared by every page read and write
+    private TableFileCache files;
+
+    // direct buffers pages are read into and written from, see BufferPool
+    private final BufferPool bufferPool;
+
+    // free page buffers the pool keeps, a read borrows at most two and read ahead one per page in flight
+    private static final int POOLED_BUFFERS = 64;
+
+    // pages are encoded here before being written, reused for every write
+    private ByteBuffer pageWriteBuffer;
+
+    // records are encoded here before being placed in a slotted page
+    private ByteBuffer recordWriteBuffer;
+
+    // tableID -> where the pages of a compressed table are, loaded on first use
+    private HashMap<Integer, PageMap> pageMaps = new HashMap<>();
+
+    // tableID -> free space and key range of every page of the table, loaded or rebuilt on first insert
+    private HashMap<Integer, FreeSpaceMap> freeSpaceMaps = new HashMap<>();
+
+    // compresses and decompresses the pages of compressed tables, reset for every page
+    private Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    private Inflater inflater = new Inflater();
+
+    // compressed pages are written from here, reused for every write
+    private ByteBuffer compressBuffer;
+
+    // tableID -> type key of each column, handed to every record decoded from the table
+    private HashMap<Integer, int[]> tableTypeKeys = new HashMap<>();
+
+    // where each column of the record being decoded starts, reused for every record read eagerly
+    private int[] columnPositions = new int[0];
+
+    // true if records read from slotted pages are only decoded when their values are read
+    private boolean lazyDecoding = true;
+
+    // writes dirty pages in the background, null unless started with startFlusher
+    private PageFlusher flusher;
+
+    // fraction of the buffer allowed to be dirty before the flusher writes pages that are not close to eviction
+    private double dirtyRatio;
+
+    // number of next victims the flusher keeps clean once the buffer is full
+    private int cleanAhead;
+
+    // pages written by the flusher
+    private long backgroundFlushes = 0;
+
+    // evictions that had to write a dirty page while a foreground call waited
+    private long foregroundStalls = 0;
+
+    // prefetches pages of sequential scans, null unless started with startReadAhead
+    private ReadAhead readAhead;
+
+    // pages added to the buffer by read ahead
+    private long readAheadPages = 0;
+
+    // tableID -> ring of the large scan reading the table
+    private HashMap<Integer, ScanRing> scanRings = new HashMap<>();
+
+    // tableID -> frames reserved for the table, tables without a quota share the frames left over
+    private HashMap<Integer, Integer> quotas = new HashMap<>();
+
+    // frames reserved by all quotas, always less than the buffer size
+    private int reservedFrames = 0;
+
+    // tableID -> pages of the table in the buffer
+    private HashMap<Integer, Integer> bufferedCounts = new HashMap<>();
+
+    // partition of the tables without a quota
+    private static final int SHARED_PARTITION = -1;
+
+    // tableID -> number of times the table was dropped, a page read ahead while this changed belongs to a
+    // table that is gone
+    private HashMap<Integer, Long> tableEpochs = new HashMap<>();
+
+    // redo log of committed statements, null unless started with startLog
+    private WriteAheadLog log;
+
+    // pages added to page orders since the last commit: tableID, position in the page order, pageID
+    private ArrayList<int[]> pageInserts = new ArrayList<>();
+
+    // pages the running statement spilled, their contents from before the statement are already logged
+    private HashSet<Long> undoLogged = new HashSet<>();
+
+    // writes the pages that were dirty at the last checkpoint, null unless started with startCheckpoints
+    private Checkpointer checkpointer;
+
+    // a checkpoint is due once this long passed since the last one, 0 for no time limit
+    private long checkpointMillis;
+
+    // a checkpoint is due once this many bytes were logged since the last one, 0 for no size limit
+    private long checkpointLogBytes;
+
+    // System.nanoTime and log end of the last checkpoint
+    private long lastCheckpointNanos;
+    private long lastCheckpointLSN;
+
+    private long checkpoints = 0;
+
+    // pages written by the checkpointer
+    private long checkpointWrites = 0;
+
+    /**
+     PageBuffer - Constructor for buffer
+     */
+    public PageBuffer(Catalog catalog, int bufferSize, String dbLoc, int pageSize){
+        this.catalog = catalog;
+        this.bufferSize = bufferSize;
+        this.dbLoc = dbLoc;
+        this.pageSize = pageSize;
+        this.policy = new LruPolicy();
+        this.files = new TableFileCache(dbLoc, MAX_OPEN_FILES, pageSize, catalog.getSegmentPages());
+        this.bufferPool = new BufferPool(pageSize, POOLED_BUFFERS);
+        // the write buffers are borrowed for as long as the buffer is open
+        this.pageWriteBuffer = bufferPool.acquire();
+        this.recordWriteBuffer = ByteBuffer.allocate(pageSize);
+        this.compressBuffer = bufferPool.acquire();
+    }
+
+    /**
+     * a page held in the buffer along with the table it belongs to
+     * pinned frames are in use by a caller of getPage and can not be evicted
+     */
+    private static class Frame {
+        private final Page page;
+        private final Table table;
+        private int pinCount = 0;
+        // LSN of the log entry holding the latest committed contents of the page, 0 if none
+        private long lsn = 0;
+        // LSN the log entry with the oldest committed change not in the table file yet starts at, 0 if none
+        private long recLSN = 0;
+
+        private Frame(Page page, Table table) {
+            this.page = page;
+            this.table = table;
+        }
+    }
+
+    /**
+     * frames a large scan of a table reads its pages into
+     * once the ring has size pages the scan evicts its own oldest page for the next one instead of a page chosen
+     * by the replacement policy, so one scan of a big table does not push every other page out of the buffer
+     */
+    private static class ScanRing {
+        private final int size;
+        // keys of the pages the scan added to the buffer, oldest first
+        private final ArrayDeque<Long> keys = new ArrayDeque<>();
+        // scans of the table using the ring, a scan started inside another one shares its ring
+        private int scans = 1;
+
+        private ScanRing(int size) {
+            this.size = size;
+        }
+    }
+
+    /**
+     * builds the page table key for a page
+     * @param tableID
+     * @param pageID
+     * @return  key unique to the (tableID, pageID) pair
+     */
+    static long pageKey(int tableID, int pageID) {
+        return ((long) tableID << 32) | (pageID & 0xFFFFFFFFL);
+    }
+
+    /**
+     * @param key   page table key built by pageKey
+     * @return ID of the table the page belongs to
+     */
+    static int tableIDOf(long key) {
+        return (int) (key >>> 32);
+    }
+
+    public synchronized ArrayList<Page> getPageBuffer() {
+        ArrayList<Page> pages = new ArrayList<>(pageTable.size());
+        for (Frame frame : pageTable.values()) {
+            pages.add(frame.page);
+        }
+        return pages;
+    }
+
+    /**
+     * switches table file access to memory mapped regions, only allowed before any table file is used
+     * @param pagesPerRegion    number of pages mapped at once, the file grows by this many pages at a time
+     */
+    public synchronized void useMemoryMappedFiles(int pagesPerRegion) {
+        if (!pageTable.isEmpty() || !writtenPageCounts.isEmpty()) {
+            throw new IllegalStateException("CANNOT CHANGE STORAGE MODE AFTER TABLE FILES ARE IN USE");
+        }
+        this.files = new MappedTableFileCache(dbLoc, MAX_OPEN_FILES, pageSize, catalog.getSegmentPages(),
+                pagesPerRegion);
+    }
+
+    /**
+     * replaces the replacement policy, only allowed while the buffer is empty
+     * @param policy
+     */
+    public synchronized void setReplacementPolicy(ReplacementPolicy policy) {
+        if (!pageTable.isEmpty()) {
+            throw new IllegalStateException("CANNOT CHANGE REPLACEMENT POLICY OF A NON EMPTY BUFFER");
+        }
+        this.policy = policy;
+    }
+
+    /**
+     * chooses between decoding every record of a page when it is read and decoding values as they are used
+     * @param lazyDecoding
+     */
+    public void setLazyDecoding(boolean lazyDecoding) {
+        this.lazyDecoding = lazyDecoding;
+    }
+
+    public boolean isLazyDecoding() {
+        return lazyDecoding;
+    }
+
+    /**
+     * @return the format records of this database are encoded in, decided by the format version in the catalog
+     */
+    public RecordFormat getRecordFormat() {
+        return RecordFormat.forVersion(catalog.getFormatVersion());
+    }
+
+    public ReplacementPolicy getReplacementPolicy() {
+        return policy;
+    }
+
+    public synchronized long getHits() {
+        return getTotalStats().getHits();
+    }
+
+    public synchronized long getMisses() {
+        return getTotalStats().getMisses();
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * @return pages in the buffer
+     */
+    public synchronized int getOccupancy() {
+        return pageTable.size();
+    }
+
+    /**
+     * @return pages in the buffer that changed since they were read or last written
+     */
+    public synchronized int getDirtyPages() {
+        return countDirty();
+    }
+
+    private BufferStats statsFor(int tableID) {
+        return tableStats.computeIfAbsent(tableID, id -> new BufferStats());
+    }
+
+    /**
+     * @param tableID
+     * @return copy of the counters of the table since they were last reset
+     */
+    public synchronized BufferStats getTableStats(int tableID) {
+        return tableStats.containsKey(tableID) ? tableStats.get(tableID).copy() : new BufferStats();
+    }
+
+    /**
+     * @return copy of the counters of every table together, tables dropped since the last reset included
+     */
+    public synchronized BufferStats getTotalStats() {
+        BufferStats total = droppedStats.copy();
+        for (BufferStats stats : tableStats.values()) {
+            total.add(stats);
+        }
+        return total;
+    }
+
+    /**
+     * sets every counter of the buffer back to 0, the flusher and read ahead counters included
+     */
+    public synchronized void resetStats() {
+        tableStats.clear();
+        droppedStats = new BufferStats();
+        backgroundFlushes = 0;
+        foregroundStalls = 0;
+        readAheadPages = 0;
+    }
+
+    /**
+     * starts a background thread that writes dirty pages before they are evicted
+     * @param dirtyRatio    fraction of the buffer, 0 to 1, that may be dirty before pages that are not about to be
+     *                      evicted are written too
+     */
+    public synchronized void startFlusher(double dirtyRatio) {
+        if (dirtyRatio < 0 || dirtyRatio > 1) {
+            throw new IllegalArgumentException(String.format("DIRTY RATIO %s IS NOT BETWEEN 0 AND 1", dirtyRatio));
+        }
+        if (flusher != null) {
+            throw new IllegalStateException("FLUSHER IS ALREADY RUNNING");
+        }
+        this.dirtyRatio = dirtyRatio;
+        this.cleanAhead = Math.max(1, bufferSize / 8);
+        flusher = new PageFlusher(this);
+        flusher.start();
+    }
+
+    public boolean isFlusherRunning() {
+        return flusher != null;
+    }
+
+    public double getDirtyRatio() {
+        return dirtyRatio;
+    }
+
+    public synchronized long getBackgroundFlushes() {
+        return backgroundFlushes;
+    }
+
+    public synchronized long getForegroundStalls() {
+        return foregroundStalls;
+    }
+
+    /**
+     * checks that a table can be given a buffer quota
+     * @param tableID   table getting the quota, -1 for a table that is being created
+     * @param frames    frames reserved for the table, 0 for no quota
+     * @throws InvalidTableOptionException if the quotas would leave no frames for tables without a quota
+     */
+    public synchronized void checkQuota(int tableID, int frames) {
+        if (frames < 0) {
+            throw new InvalidTableOptionException(String.format("ERROR: BUFFER QUOTA %d IS NEGATIVE", frames));
+        }
+        int others = reservedFrames - quotas.getOrDefault(tableID, 0);
+        if (frames > 0 && others + frames >= bufferSize) {
+            throw new InvalidTableOptionException(String.format(
+                    "ERROR: BUFFER QUOTA OF %d PAGES LEAVES NO PAGES FOR OTHER TABLES, %d OF THE %d PAGES ARE ALREADY RESERVED",
+                    frames, others, bufferSize));
+        }
+    }
+
+    /**
+     * partitions the buffer so a table has frames of its own
+     * the table keeps at least frames pages buffered however much other tables read, and once the buffer is full
+     * a table at its quota replaces its own pages. frames nobody is using are lent to any table until their owner
+     * needs them back. tables without a quota share the frames no quota reserves
+     * @param tableID
+     * @param frames    frames reserved for the table, 0 removes the quota
+     * @throws InvalidTableOptionException if the quotas would leave no frames for tables without a quota
+     */
+    public synchronized void setQuota(int tableID, int frames) {
+        checkQuota(tableID, frames);
+        Integer old = frames == 0 ? quotas.remove(tableID) : quotas.put(tableID, frames);
+        reservedFrames += frames - (old == null ? 0 : old);
+    }
+
+    /**
+     * @param tableID
+     * @return frames reserved for the table, 0 if it has no quota
+     */
+    public synchronized int getQuota(int tableID) {
+        return quotas.getOrDefault(tableID, 0);
+    }
+
+    /**
+     * @param tableID
+     * @return pages of the table in the buffer
+     */
+    public synchronized int getBufferedPages(int tableID) {
+        return bufferedCounts.getOrDefault(tableID, 0);
+    }
+
+    private void countBuffered(int tableID, int change) {
+        int count = bufferedCounts.getOrDefault(tableID, 0) + change;
+        if (count == 0) {
+            bufferedCounts.remove(tableID);
+        } else {
+            bufferedCounts.put(tableID, count);
+        }
+    }
+
+    private int partitionOf(int tableID) {
+        return quotas.containsKey(tableID) ? tableID : SHARED_PARTITION;
+    }
+
+    private int partitionSize(int partition) {
+        return partition == SHARED_PARTITION ? bufferSize - reservedFrames : quotas.get(partition);
+    }
+
+    private int partitionPages(int partition) {
+        if (partition != SHARED_PARTITION) {
+            return getBufferedPages(partition);
+        }
+        int pages = pageTable.size();
+        for (int tableID : quotas.keySet()) {
+            pages -= getBufferedPages(tableID);
+        }
+        return pages;
+    }
+
+    /**
+     * @param table     table a page is being added for
+     * @return which pages may be evicted to make room for the page, a table whose partition is full replaces one
+     *          of the pages of its partition, otherwise it takes back a frame lent to a partition over its size
+     */
+    private LongPredicate evictableFor(Table table) {
+        if (quotas.isEmpty()) {
+            return this::isUnpinned;
+        }
+        int partition = partitionOf(table.getTableID());
+        if (partitionPages(partition) >= partitionSize(partition)) {
+            return key -> isUnpinned(key) && partitionOf(tableIDOf(key)) == partition;
+        }
+        HashSet<Integer> over = new HashSet<>();
+        if (partitionPages(SHARED_PARTITION) > partitionSize(SHARED_PARTITION)) {
+            over.add(SHARED_PARTITION);
+        }
+        for (int tableID : quotas.keySet()) {
+            if (partitionPages(tableID) > partitionSize(tableID)) {
+                over.add(tableID);
+            }
+        }
+        return key -> isUnpinned(key) && over.contains(partitionOf(tableIDOf(key)));
+    }
+
+    /**
+     * starts a scan of every page of a table, call endScan when it is done
+     * a scan of a table with more pages than a quarter of the buffer reads the pages it does not find in the
+     * buffer into a small ring of frames it reuses, pages already buffered are used as they are
+     * @param table
+     */
+    public synchronized void startScan(Table table) {
+        ScanRing ring = scanRings.get(table.getTableID());
+        if (ring != null) {
+            ring.scans++;
+            return;
+        }
+        // the ring holds the pages read ahead of the scan as well
+        int ringSize = Math.min(bufferSize / 4, Math.max(bufferSize / 8, getReadAheadWindow() + 1));
+        if (ringSize >= 1 && table.getNumPages() > bufferSize / 4) {
+            scanRings.put(table.getTableID(), new ScanRing(ringSize));
+        }
+    }
+
+    /**
+     * ends a scan started with startScan, the pages in its ring stay in the buffer
+     * @param table
+     */
+    public synchronized void endScan(Table table) {
+        ScanRing ring = scanRings.get(table.getTableID());
+        if (ring != null && --ring.scans == 0) {
+            scanRings.remove(table.getTableID());
+        }
+    }
+
+    /**
+     * @param table
+     * @return the oldest page in the scan ring of the table if the scan should evict it for its next page,
+     *          NO_VICTIM if the table is not being scanned, the ring is not full yet or its oldest page is in use
+     */
+    private long ringVictim(Table table) {
+        ScanRing ring = scanRings.get(table.getTableID());
+        if (ring == null) {
+            return ReplacementPolicy.NO_VICTIM;
+        }
+        // pages that were evicted some other way are no longer in the ring
+        while (!ring.keys.isEmpty() && !pageTable.containsKey(ring.keys.peekFirst())) {
+            ring.keys.pollFirst();
+        }
+        if (ring.keys.size() < ring.size || !isUnpinned(ring.keys.peekFirst())) {
+            return ReplacementPolicy.NO_VICTIM;
+        }
+        return ring.keys.peekFirst();
+    }
+
+    /**
+     * starts reading the next pages of tables that are read in page order in a background thread
+     * @param window    number of pages read ahead of a scan
+     */
+    public synchronized void startReadAhead(int window) {
+        if (window < 1) {
+            throw new IllegalArgumentException(String.format("READ AHEAD WINDOW %d IS LESS THAN 1 PAGE", window));
+        }
+        if (readAhead != null) {
+            throw new IllegalStateException("READ AHEAD IS ALREADY RUNNING");
+        }
+        TableFileCache readAheadFiles = new TableFileCache(dbLoc, MAX_OPEN_FILES, pageSize, catalog.getSegmentPages());
+        readAhead = new ReadAhead(this, readAheadFiles, window);
+    }
+
+    /**
+     * @return pages read ahead of a scan, 0 if read ahead is off
+     */
+    public int getReadAheadWindow() {
+        return readAhead == null ? 0 : readAhead.getWindow();
+    }
+
+    public synchronized long getReadAheadPages() {
+        return readAheadPages;
+    }
+
+    /**
+     * starts logging every statement in the write ahead log of the database, from then on a dirty page is only
+     * written to its table file once its changes are in the log (see WriteAheadLog)
+     * @param groupCommit       commits that may wait for the log to be forced to disk
+     * @param groupDelayMillis  longest a commit waits for the log to be forced
+     * @throws IOException
+     */
+    public synchronized void startLog(int groupCommit, long groupDelayMillis) throws IOException {
+        if (log != null) {
+            throw new IllegalStateException("WRITE AHEAD LOG IS ALREADY RUNNING");
+        }
+        log = new WriteAheadLog(dbLoc, pageSize, groupCommit, groupDelayMillis);
+    }
+
+    public boolean isLogging() {
+        return log != null;
+    }
+
+    /**
+     * @return the write ahead log, null if statements are not logged
+     */
+    public WriteAheadLog getLog() {
+        return log;
+    }
+
+    /**
+     * starts taking fuzzy checkpoints, which cut the front of the write ahead log so recovery only replays the
+     * log since the last one (see checkpoint)
+     * @param intervalMillis    a checkpoint is due this long after the last one, 0 for no time limit
+     * @param logBytes          a checkpoint is due once this many bytes were logged since the last one, 0 for no
+     *                          size limit
+     */
+    public synchronized void startCheckpoints(long intervalMillis, long logBytes) {
+        if (log == null) {
+            throw new IllegalStateException("CHECKPOINTS NEED THE WRITE AHEAD LOG");
+        }
+        if (checkpointer != null) {
+            throw new IllegalStateException("CHECKPOINTS ARE ALREADY RUNNING");
+        }
+        if (intervalMillis <= 0 && logBytes <= 0) {
+            throw new IllegalArgumentException("CHECKPOINTS NEED A TIME OR LOG SIZE LIMIT");
+        }
+        checkpointMillis = intervalMillis;
+        checkpointLogBytes = logBytes;
+        lastCheckpointNanos = System.nanoTime();
+        lastCheckpointLSN = log.getEndLSN();
+        checkpointer = new Checkpointer(this);
+        checkpointer.start();
+    }
+
+    public boolean isCheckpointing() {
+        return checkpointer != null;
+    }
+
+    public long getCheckpointMillis() {
+        return checkpointMillis;
+    }
+
+    public long getCheckpointLogBytes() {
+        return checkpointLogBytes;
+    }
+
+    public synchronized long getCheckpoints() {
+        return checkpoints;
+    }
+
+    public synchronized long getCheckpointWrites() {
+        return checkpointWrites;
+    }
+
+    /**
+     * @return true if the time or log size limit since the last checkpoint was reached
+     */
+    public synchronized boolean isCheckpointDue() {
+        if (checkpointer == null) {
+            return false;
+        }
+        long logged = log.getEndLSN() - lastCheckpointLSN;
+        if (logged == 0) {
+            return false; // nothing happened since
+        }
+        return (checkpointLogBytes > 0 && logged >= checkpointLogBytes)
+                || (checkpointMillis > 0 && (System.nanoTime() - lastCheckpointNanos) / 1_000_000 >= checkpointMillis);
+    }
+
+    /**
+     * takes a fuzzy checkpoint, called between statements once the catalog is written
+     * <p>
+     * The table files are forced and the page maps saved, then the dirty page table is logged and the log is cut
+     * back to the oldest change of a dirty page. Dirty pages are not written here: the checkpointer writes them
+     * in the background afterwards, so the next checkpoint can cut the log past them.
+     */
+    public synchronized void checkpoint() {
+        if (log == null) {
+            return;
+        }
+        try {
+            // pages written so far are on disk before the maps pointing to them and before the log is cut
+            files.force();
+            savePageMaps();
+
+            WriteAheadLog.Entry entry = new WriteAheadLog.Entry(WriteAheadLog.ENTRY_CHECKPOINT);
+            long redoLSN = log.getEndLSN();
+            ArrayList<Long> dirty = new ArrayList<>();
+            for (Map.Entry<Long, Frame> e : pageTable.entrySet()) {
+                Frame frame = e.getValue();
+                if (frame.page.isDirty() && frame.recLSN != 0) {
+                    entry.dirtyPage(frame.table.getTableID(), frame.page.getPageID(), frame.recLSN);
+                    redoLSN = Math.min(redoLSN, frame.recLSN);
+                    dirty.add(e.getKey());
+                }
+            }
+            log.force(log.append(entry));
+            log.cutBefore(redoLSN);
+
+            lastCheckpointNanos = System.nanoTime();
+            lastCheckpointLSN = log.getEndLSN();
+            checkpoints++;
+            checkpointer.checkpointTaken(dirty, lastCheckpointLSN);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * writes a page that was dirty at the last checkpoint, called by the checkpointer
+     * the page is skipped if it was written since, is in use or was changed by the running statement
+     * @param key   page table key of the page
+     * @param checkpointLSN log end when the checkpoint was taken
+     */
+    synchronized void flushForCheckpoint(long key, long checkpointLSN) {
+        Frame frame = pageTable.get(key);
+        if (!isFlushable(key) || frame.recLSN == 0 || frame.recLSN >= checkpointLSN) {
+            return;
+        }
+        try {
+            flushPage(frame);
+            checkpointWrites++;
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * ends a statement, logging the pages it changed and the pages it added to page orders
+     * does nothing unless the log was started
+     * @param tableDefinition   the table the statement created or changed (see Catalog.tableToBytes), null if none
+     */
+    public synchronized void commit(byte[] tableDefinition) {
+        if (log == null) {
+            return;
+        }
+        try {
+            WriteAheadLog.Entry entry = new WriteAheadLog.Entry(WriteAheadLog.ENTRY_COMMIT);
+            if (tableDefinition != null) {
+                entry.table(tableDefinition);
+            }
+            ArrayList<Frame> logged = new ArrayList<>();
+            for (Frame frame : pageTable.values()) {
+                if (frame.page.isUnlogged()) {
+                    int tableID = frame.table.getTableID();
+                    entry.page(tableID, frame.page.getPageID(), encodePage(frame.page, tableID));
+                    logged.add(frame);
+                }
+            }
+            for (int[] insert : pageInserts) {
+                entry.pageInsert(insert[0], insert[1], insert[2]);
+            }
+            pageInserts.clear();
+            // pages the statement spilled are only replayed once it commits, even with nothing left to log
+            boolean spilled = !undoLogged.isEmpty();
+            undoLogged.clear();
+            if (entry.isEmpty() && !spilled) {
+                return;
+            }
+            long start = log.getEndLSN();
+            long lsn = log.commit(entry);
+            for (Frame frame : logged) {
+                frame.lsn = lsn;
+                if (frame.recLSN == 0) {
+                    frame.recLSN = start;
+                }
+                frame.page.setUnlogged(false);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * adds a page to the page order of a table, the change is logged when the statement ends
+     * @param table
+     * @param index     position of the page in the page order
+     * @param pageID
+     */
+    public synchronized void addToPageOrder(Table table, int index, int pageID) {
+        table.getPages().add(index, pageID);
+        if (log != null) {
+            pageInserts.add(new int[] {table.getTableID(), index, pageID});
+        }
+    }
+
+    /**
+     * logs that a table is dropped and forces the log, called before the files of the table are deleted
+     * @param tableID
+     */
+    public synchronized void logDrop(int tableID) {
+        if (log == null) {
+            return;
+        }
+        try {
+            WriteAheadLog.Entry entry = new WriteAheadLog.Entry(WriteAheadLog.ENTRY_COMMIT);
+            entry.drop(tableID);
+            log.force(log.commit(entry));
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * logs that the running statement replaced a table by a new definition under a new ID
+     * the replacement only takes effect in recovery once the statement commits, the files of the old table are
+     * kept until then
+     * @param oldTableID
+     * @param tableDefinition   the new table (see Catalog.tableToBytes)
+     */
+    public synchronized void logReplace(int oldTableID, byte[] tableDefinition) {
+        if (log == null) {
+            return;
+        }
+        try {
+            WriteAheadLog.Entry entry = new WriteAheadLog.Entry(WriteAheadLog.ENTRY_REPLACE);
+            entry.drop(oldTableID);
+            entry.table(tableDefinition);
+            log.append(entry);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * forces everything logged so far, called before files only an older statement needed are deleted
+     */
+    public synchronized void forceLog() {
+        if (log == null) {
+            return;
+        }
+        try {
+            log.force(log.getEndLSN());
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * logs a page the running statement changed before it is written to its table file, along with what the file
+     * held for the page before the statement, and forces the log
+     * recovery replays the page if the statement commits and puts the old contents back if it does not
+     * @param frame
+     * @throws IOException
+     */
+    private void logSpill(Frame frame) throws IOException {
+        int tableID = frame.table.getTableID();
+        int pageID = frame.page.getPageID();
+        WriteAheadLog.Entry entry = new WriteAheadLog.Entry(WriteAheadLog.ENTRY_SPILL);
+        if (undoLogged.add(pageKey(tableID, pageID))) {
+            boolean written = isCompressed(tableID)
+                    ? storedLocation(tableID, pageID) != null : pageID < pagesInFile(tableID);
+            ByteBuffer before = written ? readPageBytes(tableID, pageID) : null;
+            entry.undo(tableID, pageID, before);
+            bufferPool.release(before);
+        }
+        entry.page(tableID, pageID, encodePage(frame.page, tableID));
+        log.force(log.append(entry));
+    }
+
+    BufferPool getBufferPool() {
+        return bufferPool;
+    }
+
+    boolean isBuffered(long key) {
+        return pageTable.containsKey(key);
+    }
+
+    long getTableEpoch(int tableID) {
+        return tableEpochs.getOrDefault(tableID, 0L);
+    }
+
     /**
-     PageBuffer - Constructor for buffer
+     * @param tableID
+     * @param pageID
+     * @return position and length of the page in the table file, null if the page was never written
      */
-    public PageBuffer(Catalog catalog, int bufferSize, String dbLoc, int pageSize){
-        this.catalog = catalog;
-        this.bufferSize = bufferSize;
-        this.dbLoc = dbLoc;
-        this.pageSize = pageSize;
+    long[] storedLocation(int tableID, int pageID) {
+        if (!isCompressed(tableID)) {
+            return new long[] {Integer.BYTES + ((long) pageID * this.pageSize), this.pageSize};
+        }
+        try {
+            PageMap.Extent extent = getPageMap(tableID).get(pageID);
+            return extent == null ? null : new long[] {extent.offset, extent.length};
+        } catch (IOException e) {
+            return null;
+        }
     }
 
-    public ArrayList<Page> getPageBuffer() {
-        return pages;
+    /**
+     * adds a page read by read ahead, it is dropped if the page was buffered or its table dropped since the read
+     * started, or if making room for it would mean writing a dirty page
+     * @param table
+     * @param pageID
+     * @param stored    the page as it is in the table file, borrowed from the pool and handed back here
+     * @param epoch     table epoch when the read started
+     */
+    void addReadAheadPage(Table table, int pageID, ByteBuffer stored, long epoch) {
+        statsFor(table.getTableID()).bytesRead += stored.remaining();
+        long key = pageKey(table.getTableID(), pageID);
+        if (pageTable.containsKey(key) || getTableEpoch(table.getTableID()) != epoch) {
+            bufferPool.release(stored);
+            return;
+        }
+        if (pageTable.size() >= bufferSize) {
+            long victim = ringVictim(table);
+            if (victim == ReplacementPolicy.NO_VICTIM) {
+                long[] next = policy.nextVictims(1, evictableFor(table));
+                victim = next.length == 0 ? ReplacementPolicy.NO_VICTIM : next[0];
+            }
+            if (victim == ReplacementPolicy.NO_VICTIM || pageTable.get(victim).page.isDirty()) {
+                bufferPool.release(stored);
+                return;
+            }
+        }
+        try {
+            Page page = decodePage(table.getTableID(), pageID, inflatePage(table.getTableID(), pageID, stored));
+            addPage(page, table);
+            readAheadPages++;
+        } catch (IOException e) {
+            // inflatePage already handed stored back, the scan reads the page itself
+        }
+    }
+
+    /**
+     * writes one dirty page before it is evicted, called by the flusher until it returns false
+     * the page is one of the next pages the policy would evict once the buffer is full, or the next dirty page
+     * in eviction order while more than the dirty ratio of the buffer is dirty
+     * @return true if a page was written, false if no page needs writing now
+     */
+    synchronized boolean flushAhead() {
+        long key = ReplacementPolicy.NO_VICTIM;
+        if (pageTable.size() >= bufferSize) {
+            for (long candidate : policy.nextVictims(cleanAhead, this::isUnpinned)) {
+                if (isFlushable(candidate)) {
+                    key = candidate;
+                    break;
+                }
+            }
+        }
+        if (key == ReplacementPolicy.NO_VICTIM && countDirty() > dirtyRatio * bufferSize) {
+            long[] dirty = policy.nextVictims(1, this::isFlushable);
+            if (dirty.length > 0) {
+                key = dirty[0];
+            }
+        }
+        if (key == ReplacementPolicy.NO_VICTIM) {
+            return false;
+        }
+        try {
+            flushPage(pageTable.get(key));
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+        backgroundFlushes++;
+        return true;
+    }
+
+    /**
+     * pages the running statement changed are skipped when statements are logged, writing those would mean
+     * logging them twice, full pages stay pinned until they are split
+     * @param key
+     * @return true if the page is dirty and nobody is using it
+     */
+    private boolean isFlushable(long key) {
+        Frame frame = pageTable.get(key);
+        return frame != null && frame.pinCount == 0 && frame.page.isDirty()
+                && !(log != null && frame.page.isUnlogged());
+    }
+
+    private int countDirty() {
+        int dirty = 0;
+        for (Frame frame : pageTable.values()) {
+            if (frame.page.isDirty()) {
+                dirty++;
+            }
+        }
+        return dirty;
     }
 
     /**
      * Gets a page either within the buffer or finds the page and writes it to the buffer. If buffer is full,
-     * Least Recently used gets written to the disk
+     * the page chosen by the replacement policy gets written to the disk
+     * <p>
+     * The page is pinned and stays in the buffer until it is given back with releasePage.
      *
      * @param table     Used to access read/write of pages
      * @param pageID   Page ID number we are looking for
      * @return          returns either the page found in buffer (already existing) or new Page created
+     * @throws BufferFullException if the page is not buffered and every buffered page is pinned
      */
-    public Page getPage(Table table, int pageID){
+    public synchronized Page getPage(Table table, int pageID){
+        if (readAhead != null) {
+            readAhead.pageRequested(table, pageID);
+            readAhead.awaitRead(pageKey(table.getTableID(), pageID));
+        }
 
-        //If the page we are looking for already exists, we remove and re-add to the buffer for LRU
+        //If the page we are looking for already exists, we tell the replacement policy it was accessed
         //returns the page found
-        for( int i = 0; i < pages.size(); i++){
-            Page page = pages.get(i);
-            // if pageID is in pages and the corresponding table matches the given one:
-            if(page.getPageID() == pageID && table.equals(tables.get(i))){
-                removePage(i);
-                addPage(page, table);
-                return page;
-            }
+        long key = pageKey(table.getTableID(), pageID);
+        Frame frame = pageTable.get(key);
+        if (frame != null) {
+            statsFor(table.getTableID()).hits++;
+            policy.pageAccessed(key);
+            frame.pinCount++;
+            return frame.page;
         }
+        statsFor(table.getTableID()).misses++;
 
         //Creates null newPage to be read
-        Page newPage = new Page(pageSize);
+        Page newPage = new Page(pageSize, getRecordFormat());
 
         //TODO: may need fixes
         try {
@@ -71,208 +987,534 @@ public class PageBuffer {
         } catch (IOException e) {
             e.printStackTrace();
         }
+        newPage.setPageID(pageID);
 
         //adds newPage to the buffer
         addPage(newPage, table);
+        pageTable.get(key).pinCount++;
 
         return newPage;
     }
 
+    /**
+     * unpins a page returned by getPage, once no caller has it pinned it may be evicted
+     * the page must not be used after it is released
+     *
+     * @param table
+     * @param page
+     */
+    public synchronized void releasePage(Table table, Page page) {
+        Frame frame = pageTable.get(pageKey(table.getTableID(), page.getPageID()));
+        if (frame == null) {
+            return; // table was dropped while the page was in use
+        }
+        if (frame.pinCount == 0) {
+            throw new IllegalStateException(String.format("PAGE %d OF TABLE %s IS NOT PINNED",
+                    page.getPageID(), table.getTableName()));
+        }
+        frame.pinCount--;
+    }
+
+    /**
+     * @param key
+     * @return true if the page with the given key is not pinned
+     */
+    private boolean isUnpinned(long key) {
+        return pageTable.get(key).pinCount == 0;
+    }
+
     public Record readRecord(ByteBuffer bytebuff, ArrayList<Attribute> attributes){
-        Integer bitMapLen = bytebuff.getInt();
-        ArrayList<Integer> bitmap = new ArrayList<>();
-        for (int i = 0; i < bitMapLen; i++){
-            Integer num = bytebuff.getInt();
-            bitmap.add(num);
-        }
-
-        ArrayList<Object> record = new ArrayList<>();
-        int k = 0;
-        for (Attribute current : attributes) {
-            ArrayList<String> type = current.getType();
-            int typeCheck = this.catalog.getTypeKey(type.get(0));
-            switch (typeCheck) {
-                case (0): // int
-                    if(bitmap.get(k) == 0){//null case
-                        record.add(null);
-                    }else {
-                        record.add(bytebuff.getInt());
-                    }
-                    break;
-                case (1): // double
-                    if(bitmap.get(k) == 0){//null case
-                        record.add(null);
-                    }else {
-                        record.add(bytebuff.getDouble());
-                    }
-                    break;
-                case (2): // bool
-                    if(bitmap.get(k) == 0){
-                        record.add(null);
-                    }else {
-                        int flag = bytebuff.getInt();
-
-                        if (flag == 1) {
-                            record.add(true);
-                        } else {
-                            record.add(false);
-                        }
-                    }
-                    break;
-                case (3): // char
-                    if(bitmap.get(k) == 0){
-                        record.add(null);
-                    }else {
-                        int len = bytebuff.getInt();
-                        StringBuilder sb = new StringBuilder();
-                        for (int m = 0; m < len; m++){
-                            sb.append(bytebuff.getChar());
-                        }
-                        record.add(sb.toString());
-                    }
-                    break;
-                case (4): // varchar
-                    if(bitmap.get(k) == 0){
-                        record.add(null);
-                    }else {
-                        int len = bytebuff.getInt();
-                        StringBuilder sb = new StringBuilder();
-                        for (int m = 0; m < len; m++){
-                            sb.append(bytebuff.getChar());
-                        }
-                        record.add(sb.toString());
-                    }
-                    break;
+        return getRecordFormat().read(bytebuff, typeKeys(attributes));
+    }
+
+    public synchronized Page readPage(int tableID, int offset) throws IOException {
+        return decodePage(tableID, offset, readPageBytes(tableID, offset));
+    }
+
+    /**
+     * @param tableID
+     * @param offset    page ID of the page
+     * @param bytebuff  the page as readPageBytes returns it, handed back to the pool once decoded
+     * @return the page
+     */
+    private Page decodePage(int tableID, int offset, ByteBuffer bytebuff) {
+        ArrayList<Record> records = new ArrayList<>();
+
+        int[] typeKeys = tableTypeKeys.get(tableID);
+        if (typeKeys == null) {
+            String tableName = this.catalog.getTableName(tableID);
+            typeKeys = typeKeys(this.catalog.getSchema().get(tableName).getAttributes());
+            tableTypeKeys.put(tableID, typeKeys);
+        }
+        if (columnPositions.length < typeKeys.length) {
+            columnPositions = new int[typeKeys.length];
+        }
+        RecordFormat format = getRecordFormat();
+
+        int numRecs;
+        if (catalog.getFormatVersion() == Catalog.FORMAT_PACKED_PAGES) {
+            numRecs = bytebuff.getInt();
+            for(int r = 0; r < numRecs; r++){
+                Record record = format.read(bytebuff, typeKeys, columnPositions);
+                records.add(record);
+            }
+        } else {
+            SlottedPage slottedPage = new SlottedPage(lazyDecoding ? privateCopy(bytebuff) : bytebuff);
+            numRecs = slottedPage.getNumRecords();
+            for(int slot = 0; slot < numRecs; slot++){
+                if (lazyDecoding) {
+                    records.add(format.readLazy(slottedPage.getRecord(slot), typeKeys));
+                } else {
+                    records.add(format.read(slottedPage.getRecord(slot), typeKeys, columnPositions));
+                }
             }
-            k++;
         }
-        return new Record(record);
+        // every record is decoded or points into a copy
+        bufferPool.release(bytebuff);
+
+        Page page = new Page(records, numRecs, pageSize, format);
+        page.setPageID(offset);
+        return page;
     }
 
-    public Page readPage(int tableID, int offset) throws IOException {
-        byte[] pagebytes = new byte[this.pageSize];
-        RandomAccessFile file = new RandomAccessFile(String.format("%s\\%d", dbLoc, tableID), "r");
-        // skipping initial number of pages and other pages that come before
-        file.seek(Integer.BYTES + (offset*this.pageSize));
-        // using pageID to move to beginning of correct page
-        // reading 1 page
-        file.read(pagebytes);
-        ByteBuffer bytebuff = ByteBuffer.wrap(pagebytes);
-        ArrayList<Record> records = new ArrayList<>();
+    /**
+     * finds a single record from a record pointer, only the record in the given slot is decoded
+     * if the page is not buffered it is read without being added to the buffer
+     * @param table
+     * @param pageID
+     * @param slot      index of the record in the page
+     * @return the record
+     * @throws IOException
+     */
+    public synchronized Record readRecord(Table table, int pageID, int slot) throws IOException {
+        Frame frame = pageTable.get(pageKey(table.getTableID(), pageID));
+        if (frame != null) {
+            return frame.page.getContents().get(slot);
+        }
+        if (catalog.getFormatVersion() == Catalog.FORMAT_PACKED_PAGES) {
+            return readPage(table.getTableID(), pageID).getContents().get(slot);
+        }
+        ByteBuffer bytebuff = readPageBytes(table.getTableID(), pageID);
+        ArrayList<Attribute> attributes = this.catalog.getSchema().get(table.getTableName()).getAttributes();
+        // decoded eagerly, so nothing points into the borrowed buffer
+        Record record = readRecord(new SlottedPage(bytebuff).getRecord(slot), attributes);
+        bufferPool.release(bytebuff);
+        return record;
+    }
 
-        int numRecs = bytebuff.getInt();
-        String tableName = this.catalog.getTableName(tableID);
-        SchemaTable currentTable = this.catalog.getSchema().get(tableName);
-        ArrayList<Attribute> attributes = currentTable.getAttributes();
+    /**
+     * reads the bytes of one page, pages of compressed tables are decompressed
+     * @param tableID
+     * @param pageID
+     * @return buffer holding the page from position 0, borrowed from the pool and handed back once used
+     * @throws IOException
+     */
+    private ByteBuffer readPageBytes(int tableID, int pageID) throws IOException {
+        if (!isCompressed(tableID)) {
+            statsFor(tableID).bytesRead += this.pageSize;
+            // skipping initial number of pages and other pages that come before
+            // using pageID to move to beginning of correct page
+            return files.read(tableID, Integer.BYTES + ((long) pageID*this.pageSize), this.pageSize, bufferPool);
+        }
 
-        for(int r = 0; r < numRecs; r++){
-            Record record = readRecord(bytebuff, attributes);
-            records.add(record);
+        PageMap.Extent extent = getPageMap(tableID).get(pageID);
+        if (extent == null) {
+            throw new IOException(String.format("PAGE %d OF TABLE %d IS NOT IN ITS PAGE MAP", pageID, tableID));
         }
+        statsFor(tableID).bytesRead += extent.length;
+        return inflatePage(tableID, pageID, files.read(tableID, extent.offset, extent.length, bufferPool));
+    }
 
-        return new Page(records,numRecs, pageSize);
+    /**
+     * @param tableID
+     * @param pageID
+     * @param stored    a page as it is in the table file, handed back to the pool if the page is decompressed,
+     *                  even when it turns out to be corrupt, so callers must not hand it back again
+     * @return the page decompressed if it is a compressed page
+     * @throws IOException if the page is corrupt
+     */
+    private ByteBuffer inflatePage(int tableID, int pageID, ByteBuffer stored) throws IOException {
+        if (!isCompressed(tableID) || stored.remaining() == pageSize) {
+            return stored; // did not compress, stored as is
+        }
+        ByteBuffer bytebuff = bufferPool.acquire();
+        inflater.reset();
+        inflater.setInput(stored);
+        try {
+            while (bytebuff.hasRemaining() && !inflater.finished() && !inflater.needsInput()) {
+                inflater.inflate(bytebuff);
+            }
+        } catch (DataFormatException e) {
+            bufferPool.release(bytebuff);
+            throw new IOException(String.format("PAGE %d OF TABLE %d IS CORRUPT", pageID, tableID), e);
+        } finally {
+            bufferPool.release(stored);
+        }
+        if (bytebuff.hasRemaining()) {
+            bufferPool.release(bytebuff);
+            throw new IOException(String.format("PAGE %d OF TABLE %d IS CORRUPT", pageID, tableID));
+        }
+        bytebuff.flip();
+        return bytebuff;
     }
 
-    public void writePageIDSSize(int size, int tableID) throws IOException {
-        String filepath = String.format("%s\\%d", dbLoc, tableID);
-        RandomAccessFile raf = new RandomAccessFile(filepath, "rw");
-        raf.seek(0);
-        raf.writeInt(size);
-        raf.close();
+    /**
+     * compresses an encoded page
+     * @param bytebuff  the whole page
+     * @return the compressed page, or the page itself if it does not get smaller
+     */
+    private ByteBuffer compress(ByteBuffer bytebuff) {
+        deflater.reset();
+        deflater.setInput(bytebuff);
+        deflater.finish();
+        compressBuffer.clear();
+        while (!deflater.finished() && compressBuffer.hasRemaining()) {
+            deflater.deflate(compressBuffer);
+        }
+        if (!deflater.finished() || compressBuffer.position() >= pageSize) {
+            bytebuff.rewind();
+            return bytebuff;
+        }
+        compressBuffer.flip();
+        return compressBuffer;
     }
 
-    public int readPageIDSSize(int tableID) throws IOException {
-        String filepath = String.format("%s\\%d", dbLoc, tableID);
-        RandomAccessFile raf = new RandomAccessFile(filepath, "rw");
-        // if no records, num is 0 and dont read
-        int numPageinTable = 0;
-        if(raf.length() != 0) { // else read
-            raf.seek(0);
-            numPageinTable = raf.readInt();
+    private boolean isCompressed(int tableID) {
+        return this.catalog.getSchema().get(this.catalog.getTableName(tableID)).isCompressed();
+    }
+
+    private PageMap getPageMap(int tableID) throws IOException {
+        PageMap map = pageMaps.get(tableID);
+        if (map == null) {
+            map = PageMap.load(pageMapPath(dbLoc, tableID), (long) catalog.getSegmentPages() * pageSize);
+            pageMaps.put(tableID, map);
         }
-        raf.close();
-        return numPageinTable;
+        return map;
     }
 
-    public void writeRecord(RandomAccessFile file, Record record, ArrayList<Attribute> schemaAttrs) throws IOException {
-        // write length of bitmap
-        // write bitmap itself
-        Integer bitMapLen = record.getBitMap().size();
-        file.writeInt(bitMapLen);
-        for (Integer j : record.getBitMap()){
-            file.writeInt(j);
-        }
-
-        ArrayList<Object> data = record.getData();
-        for(int i = 0; i < data.size(); i++){
-            Attribute currentAtt = schemaAttrs.get(i);
-            Object datatype = data.get(i);
-            ArrayList<String> type = currentAtt.getType();
-            int typeCheck = this.catalog.getTypeKey(type.get(0));
-            switch (typeCheck) { // TODO edge case missing nulls
-                case (0): //int
-                    if(!(datatype == null)){
-                        int integer = (Integer)datatype;
-                        file.writeInt(integer);
-                    }
-                    break;
-                case (1): // double
-                    if(!(datatype == null)) {
-                        double doble = (Double) datatype;
-                        file.writeDouble(doble);
-                    }
-                    break;
-                case (2): // boolean
-                    if(!(datatype == null)) {
-                        boolean b = (boolean) datatype;
-                        if (b) {
-                            file.writeInt(1);
-                        } else {
-                            file.writeInt(0);
-                        }
-                    }
-                    break;
-                case (3): // char
-                case (4): // varchar
-                    if(!(datatype == null)) {
-                        String string = (String) datatype;
-                        int len = string.length();
-                        file.writeInt(len);
-                        file.writeChars(string);
-                    }
+    /**
+     * @param dbLoc
+     * @param tableID
+     * @return file the page map of a compressed table is saved in
+     */
+    public static Path pageMapPath(String dbLoc, int tableID) {
+        return Paths.get(String.format("%s\\%d.map", dbLoc, tableID));
+    }
+
+    /**
+     * @param dbLoc
+     * @param tableID
+     * @return file the free space map of a table is saved in
+     */
+    public static Path freeSpaceMapPath(String dbLoc, int tableID) {
+        return Paths.get(String.format("%s\\%d.fsm", dbLoc, tableID));
+    }
+
+    /**
+     * @param tableID
+     * @return type key (see Catalog.getTypeKey) of the primary key of the table
+     */
+    private int primaryKeyType(int tableID) {
+        SchemaTable schema = catalog.getSchema().get(catalog.getTableName(tableID));
+        Attribute key = schema.getAttributes().get(catalog.getPrimaryKeyIndex(schema));
+        return catalog.getTypeKey(key.getType().get(0));
+    }
+
+    /**
+     * @param tableID
+     * @return the order records of the table are kept in by their primary key, see Catalog.compareKeyValues
+     */
+    private Comparator<Object> keyOrder(int tableID) {
+        SchemaTable schema = catalog.getSchema().get(catalog.getTableName(tableID));
+        String keyType = schema.getAttributes().get(catalog.getPrimaryKeyIndex(schema)).getType().get(0);
+        return (key1, key2) -> key1.equals(key2) ? 0 : catalog.compareKeyValues(keyType, key1, key2) ? -1 : 1;
+    }
+
+    /**
+     * loads the free space map of a table, it is rebuilt from the pages if its file is missing or does not
+     * cover every page of the table
+     * @param table
+     * @return the free space map of the table
+     */
+    private FreeSpaceMap getFreeSpaceMap(Table table) {
+        FreeSpaceMap map = freeSpaceMaps.get(table.getTableID());
+        if (map != null) {
+            return map;
+        }
+        try {
+            map = FreeSpaceMap.load(freeSpaceMapPath(dbLoc, table.getTableID()), primaryKeyType(table.getTableID()),
+                    keyOrder(table.getTableID()));
+        } catch (IOException | RuntimeException e) {
+            // a damaged map is rebuilt like a missing one
+            map = null;
+        }
+        if (map != null && map.getNumPages() == table.getNumPages()) {
+            for (int pageID : table.getPages()) {
+                if (map.get(pageID) == null) {
+                    map = null;
                     break;
+                }
             }
+        } else {
+            map = null;
+        }
+        if (map != null) {
+            freeSpaceMaps.put(table.getTableID(), map);
+            return map;
+        }
+
+        map = new FreeSpaceMap(keyOrder(table.getTableID()));
+        freeSpaceMaps.put(table.getTableID(), map);
+        for (int pageID : table.getPages()) {
+            Page page = getPage(table, pageID);
+            updateFreeSpace(table, page);
+            releasePage(table, page);
+        }
+        return map;
+    }
+
+    /**
+     * records the free space and key range of a page after it changed
+     * @param table
+     * @param page
+     */
+    public synchronized void updateFreeSpace(Table table, Page page) {
+        FreeSpaceMap map = freeSpaceMaps.get(table.getTableID());
+        if (map != null) {
+            SchemaTable schema = catalog.getSchema().get(table.getTableName());
+            map.update(page, catalog.getPrimaryKeyIndex(schema));
+        }
+        // a map that is not loaded yet is rebuilt from the pages, which include this change
+    }
+
+    /**
+     * finds the page a record belongs on from the key ranges and free space in the free space map, without reading
+     * any page or walking the page order
+     * @param table     a table with at least one page
+     * @param record
+     * @return ID of the first page with a key the record goes before, or of the page before it if only that one
+     *          has room for the record, the last page if there is none
+     */
+    public synchronized int findInsertPage(Table table, Record record) {
+        FreeSpaceMap map = getFreeSpaceMap(table);
+        SchemaTable schema = catalog.getSchema().get(table.getTableName());
+        Object key = record.getValues().get(catalog.getPrimaryKeyIndex(schema));
+        int size = SlottedPage.SLOT_SIZE + getRecordFormat().recordSize(record.getValues());
+        int pageID = map.findPage(key, size);
+        if (pageID == -1) {
+            return table.getPages().get(table.getPages().size() - 1);
+        }
+        return pageID;
+    }
+
+    /**
+     * @param table
+     * @return size of the written pages of a compressed table divided by the bytes they take on disk,
+     *          0 if no page has been written
+     * @throws IOException
+     */
+    public synchronized double getCompressionRatio(Table table) throws IOException {
+        PageMap map = getPageMap(table.getTableID());
+        if (map.getNumPages() == 0) {
+            return 0;
+        }
+        return (double) map.getNumPages() * pageSize / map.getStoredBytes();
+    }
+
+    /**
+     * lazy records keep pointing at the page they were read from, a page read into a pooled buffer or from a mapped
+     * table file is copied first so reusing the buffer or writing the page back later does not change records that
+     * are still in use
+     * @param bytebuff  page read from the table file
+     * @return a buffer only the caller uses
+     */
+    private ByteBuffer privateCopy(ByteBuffer bytebuff) {
+        if (!bytebuff.isDirect()) {
+            return bytebuff;
+        }
+        ByteBuffer copy = ByteBuffer.allocate(bytebuff.remaining());
+        copy.put(bytebuff);
+        copy.flip();
+        return copy;
+    }
+
+    private int[] typeKeys(ArrayList<Attribute> attributes) {
+        int[] typeKeys = new int[attributes.size()];
+        for (int i = 0; i < typeKeys.length; i++) {
+            typeKeys[i] = this.catalog.getTypeKey(attributes.get(i).getType().get(0));
         }
+        return typeKeys;
+    }
+
+    public synchronized void writePageIDSSize(int size, int tableID) throws IOException {
+        pagesInFile(tableID); // the count in the file before it changes
+        ByteBuffer header = ByteBuffer.allocate(Integer.BYTES);
+        header.putInt(size);
+        header.flip();
+        files.write(tableID, header, 0);
+        writtenPageCounts.put(tableID, size);
     }
 
-    public void writePage(Page page, int tableID) throws IOException{
-        String filepath = String.format("%s\\%d", dbLoc, tableID);
-        RandomAccessFile pageWrite = new RandomAccessFile(filepath, "rw");
-        int pageN = page.getPageID();
-        int pageSize = page.getPageSize();
+    /**
+     * writes the number of pages of the table to its file unless the file already has that number
+     * @param table
+     * @throws IOException
+     */
+    private void writePageIDSSizeIfChanged(Table table) throws IOException {
+        int size = table.getPages().size();
+        Integer written = writtenPageCounts.get(table.getTableID());
+        if (written == null || written != size) {
+            writePageIDSSize(size, table.getTableID());
+        }
+    }
 
+    /**
+     * @param tableID
+     * @return number of pages the table file may hold, page IDs from this one on were never written to it
+     * @throws IOException
+     */
+    private int pagesInFile(int tableID) throws IOException {
+        Integer pages = filePages.get(tableID);
+        if (pages == null) {
+            // a page is only written after a page count that includes it
+            pages = readPageIDSSize(tableID);
+            filePages.put(tableID, pages);
+        }
+        return pages;
+    }
 
-       if(pageN > 0){
-           pageWrite.seek(pageSize *pageN + Integer.BYTES);
-       } else {
-        pageWrite.seek(Integer.BYTES);
-       }
+    public synchronized int readPageIDSSize(int tableID) throws IOException {
+        // if no records, num is 0 and dont read
+        int numPageinTable = 0;
+        if(files.size(tableID) != 0) { // else read
+            ByteBuffer header = ByteBuffer.allocate(Integer.BYTES);
+            files.read(tableID, header, 0);
+            header.flip();
+            numPageinTable = header.getInt();
+        }
+        writtenPageCounts.put(tableID, numPageinTable);
+        return numPageinTable;
+    }
 
+    public void writeRecord(ByteBuffer bytebuff, Record record, ArrayList<Attribute> schemaAttrs) {
+        getRecordFormat().write(bytebuff, record.getValues(), typeKeys(schemaAttrs));
+    }
 
-        //Number of records written
-        pageWrite.writeInt(page.getNumRecords());
+    /**
+     * encodes a page into the reusable page buffer in the same layout readPage decodes
+     * @param page
+     * @param tableID
+     * @return buffer holding the encoded page, ready to be written
+     * @throws IOException if the page does not fit in pageSize bytes
+     */
+    private ByteBuffer encodePage(Page page, int tableID) throws IOException {
+        ByteBuffer bytebuff = pageWriteBuffer;
+        bytebuff.clear();
 
         String tableName = this.catalog.getTableName(tableID);
         SchemaTable currentTable = this.catalog.getSchema().get(tableName);
-        ArrayList<Attribute> attributes = currentTable.getAttributes();
+        int[] typeKeys = typeKeys(currentTable.getAttributes());
+        RecordFormat format = getRecordFormat();
         ArrayList<Record> records = page.getContents();
 
-        //Writes each record
-        for(Record record: records){
-            writeRecord(pageWrite, record, attributes);
+        try {
+            if (catalog.getFormatVersion() == Catalog.FORMAT_PACKED_PAGES) {
+                //Number of records written
+                bytebuff.putInt(page.getNumRecords());
+
+                //Writes each record
+                for(Record record: records){
+                    format.write(bytebuff, record.getValues(), typeKeys);
+                }
+            } else {
+                // records go into the slot directory in page order, the whole page is written
+                SlottedPage slottedPage = SlottedPage.format(bytebuff);
+                for(Record record: records){
+                    // records read from disk and not decoded since are copied as they are
+                    ByteBuffer encoded = record instanceof LazyRecord ? ((LazyRecord) record).getEncoded() : null;
+                    if (encoded == null) {
+                        recordWriteBuffer.clear();
+                        format.write(recordWriteBuffer, record.getValues(), typeKeys);
+                        recordWriteBuffer.flip();
+                        encoded = recordWriteBuffer;
+                    }
+                    if (!slottedPage.insertRecord(slottedPage.getNumRecords(), encoded)) {
+                        throw new BufferOverflowException();
+                    }
+                }
+                bytebuff.position(bytebuff.capacity());
+            }
+        } catch (BufferOverflowException e) {
+            throw new IOException(String.format("PAGE %d OF TABLE %s DOES NOT FIT IN %d BYTES",
+                    page.getPageID(), tableName, bytebuff.capacity()));
+        }
+
+        bytebuff.flip();
+        return bytebuff;
+    }
+
+    public synchronized void writePage(Page page, int tableID) throws IOException{
+        writeImage(tableID, page.getPageID(), encodePage(page, tableID));
+    }
+
+    /**
+     * writes an encoded page to the table file, compressing it if the table is compressed
+     * @param tableID
+     * @param pageN
+     * @param bytebuff  the whole encoded page
+     * @throws IOException
+     */
+    synchronized void writeImage(int tableID, int pageN, ByteBuffer bytebuff) throws IOException {
+        if (readAhead != null) {
+            readAhead.pageWritten(pageKey(tableID, pageN));
+        }
+        filePages.put(tableID, Math.max(pagesInFile(tableID), pageN + 1));
+
+        if (isCompressed(tableID)) {
+            ByteBuffer stored = compress(bytebuff);
+            PageMap.Extent extent = getPageMap(tableID).place(pageN, stored.remaining());
+            statsFor(tableID).bytesWritten += stored.remaining();
+            files.write(tableID, stored, extent.offset);
+            return;
         }
 
-        pageWrite.close();
+        // page goes after the number of pages and the pages that come before it
+        statsFor(tableID).bytesWritten += bytebuff.remaining();
+        files.write(tableID, bytebuff, (long) pageSize *pageN + Integer.BYTES);
+    }
+
+    /**
+     * forces the table files to disk
+     * @throws IOException
+     */
+    synchronized void forceFiles() throws IOException {
+        files.force();
+    }
+
+    /**
+     * closes the open table files, called once the buffer has been purged and the catalog written at shutdown
+     * everything in the write ahead log is then in the table files and the catalog, so the log is cleared
+     * @throws IOException
+     */
+    public void close() throws IOException {
+        // outside the lock, the flusher and read ahead may be waiting for it to finish their page
+        if (flusher != null) {
+            flusher.stop();
+        }
+        if (readAhead != null) {
+            readAhead.stop();
+        }
+        if (checkpointer != null) {
+            checkpointer.stop();
+        }
+        synchronized (this) {
+            if (log != null) {
+                files.force();
+                log.clear();
+                log.close();
+            }
+            files.closeAll();
+        }
     }
 
     // public void writeAllPages(Table table) throws IOException {
@@ -293,134 +1535,260 @@ public class PageBuffer {
 
     /**
      * checks if page buffer is full
-     * writes out the least recently used page and removes it from the list
+     * removes the page chosen by the replacement policy from the buffer, writing it out only if it is dirty
+     * a large scan of the table removes the oldest page of its ring instead (see startScan), with buffer quotas
+     * the page comes from the partition of the table or from one using frames lent to it (see setQuota)
+     * called before a page is added so the page being added can never be chosen
+     * @throws BufferFullException if every buffered page is pinned, or the chosen page could not be written, it
+     *                             then stays buffered
      */
-    public boolean writeIfFull(Table table) {
-        if (pages.size() > bufferSize) {
-
-            ArrayList<Integer> pageIDS = table.getPages();
-
+    public synchronized boolean writeIfFull(Table table) {
+        if (pageTable.size() >= bufferSize && !pageTable.isEmpty()) {
+            long key = ringVictim(table);
+            boolean fromRing = key != ReplacementPolicy.NO_VICTIM;
+            if (fromRing) {
+                scanRings.get(table.getTableID()).keys.pollFirst();
+                policy.pageRemoved(key);
+            } else {
+                key = policy.evict(evictableFor(table));
+                if (key == ReplacementPolicy.NO_VICTIM && !quotas.isEmpty()) {
+                    // every page the partitions could give up is pinned
+                    key = policy.evict(this::isUnpinned);
+                }
+            }
+            if (key == ReplacementPolicy.NO_VICTIM) {
+                throw new BufferFullException(String.format(
+                        "ERROR: BUFFER FULL, ALL %d PAGES ARE PINNED", pageTable.size()));
+            }
+            Frame victim = pageTable.get(key);
+            if (victim.page.isDirty()) {
+                foregroundStalls++;
+            }
             try {
-                writePageIDSSize(pageIDS.size(), table.getTableID());
-                writePage(pages.get(0), tables.get(0).getTableID());
+                flushPage(victim);
             } catch (IOException e) {
-                e.printStackTrace();
+                // the page keeps its changes, it goes back to where the policy had it
+                if (fromRing) {
+                    scanRings.get(table.getTableID()).keys.addFirst(key);
+                }
+                policy.pageAdded(key);
+                throw new BufferFullException(String.format("ERROR: BUFFER FULL, PAGE %d OF TABLE %d COULD NOT BE "
+                        + "WRITTEN: %s", victim.page.getPageID(), victim.table.getTableID(), e.getMessage()), e);
             }
-            // remove page and its table from page buffer
-//            removePage(0); no
+            pageTable.remove(key);
+            countBuffered(victim.table.getTableID(), -1);
+            statsFor(victim.table.getTableID()).evictions++;
             return true;
         }
         return false;
     }
 
     /**
-     * adds given page and table to lists
+     * adds given page and its table to the buffer, the page is not pinned
      * @param page
      * @param table
+     * @throws BufferFullException if every buffered page is pinned
      */
-    public void addPage(Page page, Table table) {
-        pages.add(page);
-        tables.add(table);
-        writeIfFull(table);
+    public synchronized void addPage(Page page, Table table) {
+        long key = pageKey(table.getTableID(), page.getPageID());
+        if (!pageTable.containsKey(key)) {
+            writeIfFull(table);
+            ScanRing ring = scanRings.get(table.getTableID());
+            if (ring != null) {
+                ring.keys.addLast(key);
+            }
+            countBuffered(table.getTableID(), 1);
+        }
+        pageTable.put(key, new Frame(page, table));
+        policy.pageAdded(key);
+        if (flusher != null && pageTable.size() >= bufferSize) {
+            // the next page added evicts one, have the flusher make sure it is clean by then
+            flusher.wake();
+        }
     }
 
     /**
-     * removes page and table at given index
-     * @param idx
+     * removes the given page of a table from the buffer without writing it
+     * @param table
+     * @param pageID
      */
-    public void removePage(int idx) {
-        pages.remove(idx);
-        tables.remove(idx);
+    public synchronized void removePage(Table table, int pageID) {
+        long key = pageKey(table.getTableID(), pageID);
+        if (pageTable.remove(key) != null) {
+            policy.pageRemoved(key);
+            countBuffered(table.getTableID(), -1);
+        }
     }
 
     /**
      removes table from page buffer and all associated pages
-     @param tableName
+     @param table
      */
-    public void removeTable(String tableName){
-        Iterator<Page> pageIterator = pages.iterator();
-        Iterator<Table> tableIterator = tables.iterator();
+    public synchronized void removeTable(Table table){
+        Iterator<Map.Entry<Long, Frame>> frameIterator = pageTable.entrySet().iterator();
 
-        while(pageIterator.hasNext() && tableIterator.hasNext()){
-            Page page = pageIterator.next();
-            Table table = tableIterator.next();
+        while(frameIterator.hasNext()){
+            Map.Entry<Long, Frame> entry = frameIterator.next();
 
-            if(table.getTableName().equals(tableName)){
-                pageIterator.remove();
-                tableIterator.remove();
+            if(entry.getValue().table.getTableID() == table.getTableID()){
+                frameIterator.remove();
+                policy.pageRemoved(entry.getKey());
             }
         }
+        // table IDs are reused, a new table with this ID starts without a page count or page map
+        writtenPageCounts.remove(table.getTableID());
+        filePages.remove(table.getTableID());
+        pageMaps.remove(table.getTableID());
+        freeSpaceMaps.remove(table.getTableID());
+        tableTypeKeys.remove(table.getTableID());
+        pageInserts.removeIf(insert -> insert[0] == table.getTableID());
+        scanRings.remove(table.getTableID());
+        bufferedCounts.remove(table.getTableID());
+        BufferStats stats = tableStats.remove(table.getTableID());
+        if (stats != null) {
+            droppedStats.add(stats);
+        }
+        setQuota(table.getTableID(), 0);
+        tableEpochs.merge(table.getTableID(), 1L, Long::sum);
+        if (readAhead != null) {
+            readAhead.tableRemoved(table.getTableID());
+        }
+        // file is about to be deleted
+        try {
+            files.close(table.getTableID());
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
     }
     /**
      * splits given page
      * makes a new page for the other half of the split and puts it in the page buffer
      * inserts new page ID into the table after given page
+     * if the other half still does not fit it is split again, so every page ends up at most pageSize bytes
+     * the caller releases the page after splitting it, so it is never written while it does not fit, once the first
+     * half is in it the pin is lent out while the new pages are added, so a buffer of one page can still split
      * @param table
      * @param page
      */
-    public void splitPage(Table table, Page page) {
-        Page newPage = new Page(pageSize);
-        int curPageSize = page.getPageSize(); // current size of overflowing page;
-        int idealSize = curPageSize/2; // ideal size of daughter pages
+    public synchronized void splitPage(Table table, Page page) {
+        int idealSize = page.getPageSize()/2; // ideal size of daughter pages
 
-        // calculating where page will be split
-        int halfsize1 = 0; //pagesize of daughter page 1
-        int halfNum = 0; // num of records in first page
         ArrayList<Record> records = page.getContents();
-        for(Record record : records) {
-            halfsize1+=page.getRecordSize(record.getData());
-            // adding null arraylist to record size
-            halfsize1+=Integer.BYTES + (record.getBitMap().size()*Integer.BYTES);
-            halfNum++;
-            if(halfsize1 >= idealSize) {
-                break;
-            }
+        int[] sizes = new int[records.size()]; // bytes each record takes in a page, slot included
+        int remaining = 0; // bytes of the records not in a daughter page yet
+        for (int i = 0; i < records.size(); i++) {
+            sizes[i] = SlottedPage.SLOT_SIZE + page.getRecordSize(records.get(i));
+            remaining += sizes[i];
         }
-        // split records of given page into two lists
-        ArrayList<Record> firstHalf = new ArrayList<>(halfNum);
-        ArrayList<Record> secondHalf = new ArrayList<>(page.getNumRecords() - halfNum);
 
-        for (int i = 0; i < halfNum; i++) {
-            firstHalf.add(records.get(i));
+        // split records of given page into daughter pages
+        ArrayList<ArrayList<Record>> daughters = new ArrayList<>();
+        int start = 0;
+        while (start < records.size()) {
+            int end = records.size();
+            int halfsize1 = SlottedPage.HEADER_SIZE + remaining; // pagesize of this daughter page
+            if (halfsize1 > pageSize) {
+                // calculating where page will be split, the record that reaches half the page stays in it
+                halfsize1 = SlottedPage.HEADER_SIZE;
+                end = start;
+                while (end < records.size() - 1 && halfsize1 < idealSize) {
+                    halfsize1 += sizes[end++];
+                }
+                while (halfsize1 > pageSize && end > start + 1) {
+                    halfsize1 -= sizes[--end];
+                }
+            }
+            daughters.add(new ArrayList<>(records.subList(start, end)));
+            remaining -= halfsize1 - SlottedPage.HEADER_SIZE;
+            start = end;
         }
 
-        for (int i = halfNum; i < page.getNumRecords(); i++) {
-            secondHalf.add(records.get(i));
-        }
+        page.setContents(daughters.get(0));
+        updateFreeSpace(table, page);
+        // split page counts as accessed before the new pages are added
+        long key = pageKey(table.getTableID(), page.getPageID());
+        policy.pageAccessed(key);
 
-        page.setContents(firstHalf);
-        newPage.setContents(secondHalf);
+        // the page fits now, it may be written out to make room for the new pages
+        Frame frame = pageTable.get(key);
+        boolean lent = frame != null && frame.pinCount > 0;
+        if (lent) {
+            frame.pinCount--;
+        }
+        try {
+            // page IDs are not positions once pages have split, find where the split page is in the table
+            int pageIdx = table.getPages().indexOf(page.getPageID());
+            for (int d = 1; d < daughters.size(); d++) {
+                Page newPage = new Page(pageSize, getRecordFormat());
+                newPage.setContents(daughters.get(d));
+                newPage.setPageID(table.getNumPages());
+                addToPageOrder(table, pageIdx + d, newPage.getPageID());
+                updateFreeSpace(table, newPage);
+                addPage(newPage, table);
+            }
+        } finally {
+            if (lent) {
+                frame = pageTable.get(key);
+                if (frame != null) {
+                    frame.pinCount++;
+                } else {
+                    // written out for a new page, read back so the caller still has it pinned
+                    getPage(table, page.getPageID());
+                }
+            }
+        }
+    }
 
-        newPage.setPageID(table.getNumPages());
-        for(int j : table.getPages()){
-            if(j == page.getPageID()){
-                table.getPages().add(j+1, newPage.getPageID());
-                break;
+    /**
+     * writes a buffered page to disk if it is dirty, clean pages already match the disk and are skipped
+     * @param frame
+     * @throws IOException
+     */
+    private void flushPage(Frame frame) throws IOException {
+        if (!frame.page.isDirty()) {
+            return;
+        }
+        if (log != null) {
+            // the log has the page before the table file does
+            if (frame.page.isUnlogged()) {
+                logSpill(frame);
+            } else {
+                log.force(frame.lsn);
             }
         }
+        Table t = frame.table;
+        writePageIDSSizeIfChanged(t); // first integer in memory for num Pages
+        writePage(frame.page, t.getTableID());
+        frame.page.setDirty(false);
+        frame.recLSN = 0;
+        statsFor(t.getTableID()).writeBacks++;
+    }
 
-        for( int i = 0; i < pages.size(); i++){
-            Page page1 = pages.get(i);
-            // if pageID is in pages and the corresponding table matches the given one:
-            if(page1.getPageID() == page.getPageID() && table.equals(tables.get(i))){
-                removePage(i);
-                addPage(page1, table);
-                break;
+    /**
+     * saves the page maps that changed, after the pages they point to are written
+     * @throws IOException
+     */
+    private void savePageMaps() throws IOException {
+        for (Map.Entry<Integer, PageMap> entry : pageMaps.entrySet()) {
+            if (entry.getValue().isDirty()) {
+                entry.getValue().save(pageMapPath(dbLoc, entry.getKey()));
             }
         }
-        addPage(newPage, table);
     }
 
     /**
-     * If database is shut down, loop through the buffer and write each page to disk. Then clear the buffer.
+     * If database is shut down, loop through the buffer and write each dirty page to disk.
      */
-    public void purgeBuffer() throws IOException {
-        for(int p = 0; p < pages.size(); p++){
-            Table t = tables.get(p);
-            ArrayList<Integer> pageIDS = t.getPages(); // arraylist of pageIDs in this table
-            writePageIDSSize(pageIDS.size(), t.getTableID()); // first integer in memory for num Pages
-            int tid = t.getTableID();
-            writePage(pages.get(p), tid);
+    public synchronized void purgeBuffer() throws IOException {
+        for(Frame frame : pageTable.values()){
+            flushPage(frame);
+        }
+        files.flush();
+        savePageMaps();
+        for (Map.Entry<Integer, FreeSpaceMap> entry : freeSpaceMaps.entrySet()) {
+            if (entry.getValue().isDirty()) {
+                entry.getValue().save(freeSpaceMapPath(dbLoc, entry.getKey()), primaryKeyType(entry.getKey()));
+            }
         }
 
     }
@@ -0,0 +1,78 @@
+package database;
+
+/**
+ * Background thread that writes dirty pages of a PageBuffer before they are evicted.
+ * <p>
+ * Without it a full buffer evicting a dirty page writes it inside the getPage or insert that needed the frame.
+ * The flusher keeps the next pages the replacement policy would evict clean, and while more than the dirty
+ * ratio of the buffer is dirty it keeps writing pages in eviction order. Pages are written one at a time with
+ * the buffer locked, so a foreground call waits for at most one page write.
+ */
+class PageFlusher implements Runnable {
+
+    // how long the flusher sleeps between rounds when the buffer does not wake it
+    private static final long IDLE_MILLIS = 20;
+
+    private final PageBuffer buffer;
+
+    private final Thread thread;
+
+    private volatile boolean running = true;
+
+    // set when the buffer asks for a round before the flusher would wake up on its own
+    private boolean wakeRequested = false;
+
+    /**
+     * @param buffer    buffer whose pages are flushed
+     */
+    PageFlusher(PageBuffer buffer) {
+        this.buffer = buffer;
+        this.thread = new Thread(this, "page-flusher");
+        // never keeps the database running, the buffer is purged at shutdown anyway
+        this.thread.setDaemon(true);
+    }
+
+    void start() {
+        thread.start();
+    }
+
+    /**
+     * starts a round now, called by the buffer when a foreground eviction had to write a page
+     */
+    synchronized void wake() {
+        wakeRequested = true;
+        notifyAll();
+    }
+
+    /**
+     * stops the thread and waits for the page it is writing
+     */
+    void stop() {
+        running = false;
+        wake();
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void run() {
+        while (running) {
+            while (running && buffer.flushAhead()) {
+                // one page per call so the buffer lock is given up between writes
+            }
+            synchronized (this) {
+                if (!wakeRequested && running) {
+                    try {
+                        wait(IDLE_MILLIS);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                wakeRequested = false;
+            }
+        }
+    }
+}
@@ -0,0 +1,244 @@
+package database;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Where the pages of a compressed table are in its table file.
+ * <p>
+ * Compressed pages have different sizes, so unlike other tables a page can not be found from its page ID.
+ * Each page is kept in an extent, a run of bytes in the table file at least as long as the compressed page.
+ * Extents are rounded up so a page can grow a little and still be rewritten in place, a page that outgrows its
+ * extent moves to a new one and the old extent is reused by later pages. Extents never cross from one segment
+ * file of the table to the next (see TableFileCache).
+ * <p>
+ * The map is saved in its own file next to the table file.
+ */
+class PageMap {
+
+    // extents are allocated in multiples of this many bytes
+    static final int EXTENT_ALIGNMENT = 64;
+
+    // bytes written per page in the map file: page ID, offset, capacity, length
+    private static final int ENTRY_SIZE = Integer.BYTES + Long.BYTES + 2 * Integer.BYTES;
+
+    /**
+     * bytes of the table file holding one page
+     */
+    static class Extent {
+        final long offset;
+        final int capacity;
+        // bytes of the page stored in the extent
+        int length;
+
+        private Extent(long offset, int capacity, int length) {
+            this.offset = offset;
+            this.capacity = capacity;
+            this.length = length;
+        }
+    }
+
+    // pageID -> extent holding the page
+    private final HashMap<Integer, Extent> extents = new HashMap<>();
+
+    // offset -> capacity of extents not holding a page
+    private final TreeMap<Long, Integer> free = new TreeMap<>();
+
+    // first byte after the last extent, extents start after the page count at the start of the file
+    private long end = Integer.BYTES;
+
+    // true if the map changed since it was loaded or saved
+    private boolean dirty = false;
+
+    // bytes of pages in a segment file of the table, 0 if the table is one file
+    private final long segmentSize;
+
+    /**
+     * @param segmentSize   bytes of pages in a segment file of the table, 0 if the table is one file
+     */
+    PageMap(long segmentSize) {
+        this.segmentSize = segmentSize;
+    }
+
+    /**
+     * @param pageID
+     * @return the extent holding the page, null if the page was never written
+     */
+    Extent get(int pageID) {
+        return extents.get(pageID);
+    }
+
+    /**
+     * finds room for a page, the page stays in its extent if it still fits
+     * @param pageID
+     * @param length    bytes the page takes
+     * @return the extent to write the page to
+     */
+    Extent place(int pageID, int length) {
+        dirty = true;
+        Extent extent = extents.get(pageID);
+        if (extent != null && length <= extent.capacity) {
+            extent.length = length;
+            return extent;
+        }
+        if (extent != null) {
+            release(extent.offset, extent.capacity);
+        }
+
+        int capacity = (length + EXTENT_ALIGNMENT - 1) / EXTENT_ALIGNMENT * EXTENT_ALIGNMENT;
+        long offset = -1;
+        // first free extent that is big enough, the rest of it stays free
+        for (Map.Entry<Long, Integer> entry : free.entrySet()) {
+            long start = fitInSegment(entry.getKey(), capacity);
+            long freeEnd = entry.getKey() + entry.getValue();
+            if (start + capacity <= freeEnd) {
+                offset = start;
+                free.remove(entry.getKey());
+                if (start > entry.getKey()) {
+                    free.put(entry.getKey(), (int) (start - entry.getKey()));
+                }
+                if (freeEnd > start + capacity) {
+                    free.put(start + capacity, (int) (freeEnd - start - capacity));
+                }
+                break;
+            }
+        }
+        if (offset == -1) {
+            offset = fitInSegment(end, capacity);
+            if (offset > end) {
+                // the rest of the segment stays free for smaller pages
+                release(end, (int) (offset - end));
+            }
+            end = offset + capacity;
+        }
+
+        extent = new Extent(offset, capacity, length);
+        extents.put(pageID, extent);
+        return extent;
+    }
+
+    /**
+     * @param offset
+     * @param capacity
+     * @return offset if an extent there stays in one segment file, the start of the next segment otherwise
+     */
+    private long fitInSegment(long offset, int capacity) {
+        if (segmentSize == 0) {
+            return offset;
+        }
+        long next = Integer.BYTES + ((offset - Integer.BYTES) / segmentSize + 1) * segmentSize;
+        return offset + capacity > next ? next : offset;
+    }
+
+    /**
+     * marks an extent as free, merging it with free extents right before and after it
+     */
+    private void release(long offset, int capacity) {
+        Map.Entry<Long, Integer> before = free.floorEntry(offset);
+        if (before != null && before.getKey() + before.getValue() == offset) {
+            free.remove(before.getKey());
+            offset = before.getKey();
+            capacity += before.getValue();
+        }
+        Integer after = free.remove(offset + capacity);
+        if (after != null) {
+            capacity += after;
+        }
+        if (offset + capacity == end) {
+            end = offset;
+        } else {
+            free.put(offset, capacity);
+        }
+    }
+
+    int getNumPages() {
+        return extents.size();
+    }
+
+    /**
+     * @return bytes of compressed page data in the table file
+     */
+    long getStoredBytes() {
+        long stored = 0;
+        for (Extent extent : extents.values()) {
+            stored += extent.length;
+        }
+        return stored;
+    }
+
+    boolean isDirty() {
+        return dirty;
+    }
+
+    /**
+     * writes the map to a file, replacing what was there
+     * @param path
+     * @throws IOException
+     */
+    void save(Path path) throws IOException {
+        ByteBuffer bytebuff = ByteBuffer.allocate(Integer.BYTES + extents.size() * ENTRY_SIZE);
+        bytebuff.putInt(extents.size());
+        for (Map.Entry<Integer, Extent> entry : extents.entrySet()) {
+            Extent extent = entry.getValue();
+            bytebuff.putInt(entry.getKey());
+            bytebuff.putLong(extent.offset);
+            bytebuff.putInt(extent.capacity);
+            bytebuff.putInt(extent.length);
+        }
+        bytebuff.flip();
+        // written next to the map and moved over it, a crash while saving leaves the old map
+        Path tmp = Paths.get(path + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (bytebuff.hasRemaining()) {
+                channel.write(bytebuff);
+            }
+            // the write ahead log is cut once the map is saved, so it has to survive a crash
+            channel.force(false);
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        dirty = false;
+    }
+
+    /**
+     * reads a map saved with save, the free extents are worked out from the gaps between pages
+     * @param path
+     * @param segmentSize   bytes of pages in a segment file of the table, 0 if the table is one file
+     * @return the map, empty if the file does not exist
+     * @throws IOException
+     */
+    static PageMap load(Path path, long segmentSize) throws IOException {
+        PageMap map = new PageMap(segmentSize);
+        if (!Files.exists(path)) {
+            return map;
+        }
+        ByteBuffer bytebuff = ByteBuffer.wrap(Files.readAllBytes(path));
+        int numPages = bytebuff.getInt();
+        ArrayList<Extent> byOffset = new ArrayList<>(numPages);
+        for (int i = 0; i < numPages; i++) {
+            int pageID = bytebuff.getInt();
+            Extent extent = new Extent(bytebuff.getLong(), bytebuff.getInt(), bytebuff.getInt());
+            map.extents.put(pageID, extent);
+            byOffset.add(extent);
+        }
+
+        byOffset.sort((e1, e2) -> Long.compare(e1.offset, e2.offset));
+        for (Extent extent : byOffset) {
+            if (extent.offset > map.end) {
+                map.free.put(map.end, (int) (extent.offset - map.end));
+            }
+            map.end = extent.offset + extent.capacity;
+        }
+        return map;
+    }
+}
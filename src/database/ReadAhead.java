@@ -0,0 +1,236 @@
+package database;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Prefetches the next pages of a table that is being read in page order.
+ * <p>
+ * The buffer reports every page it is asked for. Once a table is asked for two pages in a row in page order
+ * the next window pages that are not buffered are read by a background thread, so they are usually in the
+ * buffer by the time the scan gets to them. The thread only reads the bytes with its own table files; the
+ * buffer decodes and adds the page, and drops it if the page was written or the table dropped meanwhile.
+ * A scan that asks for a page that is still being read waits for that read.
+ * <p>
+ * Everything but the reads runs with the buffer locked. The worker holds its table files locked while it reads,
+ * so a dropped table can cancel its reads and close its files before the files are deleted.
+ */
+class ReadAhead {
+
+    private final PageBuffer buffer;
+
+    // pages read ahead of a sequential scan
+    private final int window;
+
+    // reads the pages, a single thread so reads never wait for each other's table files
+    private final ThreadPoolExecutor worker;
+
+    // table files of the worker thread, locked while they are used
+    private final TableFileCache files;
+
+    // tableID -> position in the page order of the last page asked for, only tables read in order
+    private final HashMap<Integer, Integer> lastPositions = new HashMap<>();
+
+    // page table key -> read of the page queued or running on the worker
+    private final HashMap<Long, PageRead> inFlight = new HashMap<>();
+
+    /**
+     * a page being read ahead
+     */
+    private class PageRead implements Runnable {
+
+        private final Table table;
+
+        private final int pageID;
+
+        private final long position;
+
+        private final int length;
+
+        private final long epoch;
+
+        // times the page was written since the read was queued, the bytes read may be older than the last write
+        private int writes = 0;
+
+        // set with the table files locked once the table is dropped
+        private boolean cancelled = false;
+
+        PageRead(Table table, int pageID, long position, int length, long epoch) {
+            this.table = table;
+            this.pageID = pageID;
+            this.position = position;
+            this.length = length;
+            this.epoch = epoch;
+        }
+
+        @Override
+        public void run() {
+            read(this);
+        }
+    }
+
+    /**
+     * @param buffer
+     * @param files     table files for the worker, not shared with the buffer
+     * @param window    pages read ahead of a sequential scan
+     */
+    ReadAhead(PageBuffer buffer, TableFileCache files, int window) {
+        this.buffer = buffer;
+        this.window = window;
+        this.files = files;
+        this.worker = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), task -> {
+            Thread thread = new Thread(task, "page-read-ahead");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    int getWindow() {
+        return window;
+    }
+
+    /**
+     * called by the buffer for every page it is asked for
+     * @param table
+     * @param pageID
+     */
+    void pageRequested(Table table, int pageID) {
+        // only the page after the last one or the first page can continue or start a scan
+        Integer last = lastPositions.get(table.getTableID());
+        int position = -1;
+        if (last != null && last + 1 < table.getPages().size() && table.getPages().get(last + 1) == pageID) {
+            position = last + 1;
+        } else if (!table.getPages().isEmpty() && table.getPages().get(0) == pageID) {
+            position = 0;
+        }
+        if (position == -1) {
+            lastPositions.remove(table.getTableID());
+            return;
+        }
+        lastPositions.put(table.getTableID(), position);
+        if (position == 0) {
+            return; // one page is not a scan yet
+        }
+
+        int end = Math.min(position + window, table.getPages().size() - 1);
+        for (int p = position + 1; p <= end; p++) {
+            int nextID = table.getPages().get(p);
+            long key = PageBuffer.pageKey(table.getTableID(), nextID);
+            if (buffer.isBuffered(key) || inFlight.containsKey(key)) {
+                continue;
+            }
+            long[] location = buffer.storedLocation(table.getTableID(), nextID);
+            if (location == null) {
+                continue;
+            }
+            PageRead read = new PageRead(table, nextID, location[0], (int) location[1],
+                    buffer.getTableEpoch(table.getTableID()));
+            inFlight.put(key, read);
+            worker.execute(read);
+        }
+    }
+
+    /**
+     * reads a page on the worker thread and hands it to the buffer
+     */
+    private void read(PageRead read) {
+        ByteBuffer stored = null;
+        synchronized (files) {
+            if (read.cancelled) {
+                return;
+            }
+            try {
+                stored = files.read(read.table.getTableID(), read.position, read.length, buffer.getBufferPool());
+            } catch (IOException e) {
+                // the scan reads the page itself
+            }
+        }
+        synchronized (buffer) {
+            long key = PageBuffer.pageKey(read.table.getTableID(), read.pageID);
+            inFlight.remove(key, read);
+            if (stored != null && (read.writes > 0 || read.cancelled)) {
+                buffer.getBufferPool().release(stored);
+            } else if (stored != null) {
+                buffer.addReadAheadPage(read.table, read.pageID, stored, read.epoch);
+            }
+            // a scan that caught up with the read is waiting for it
+            buffer.notifyAll();
+        }
+    }
+
+    /**
+     * called by the buffer whenever it writes a page, a read of the page already under way may return the bytes
+     * from before the write so it is not added
+     * @param key   page table key of the page
+     */
+    void pageWritten(long key) {
+        PageRead read = inFlight.get(key);
+        if (read != null) {
+            read.writes++;
+        }
+    }
+
+    /**
+     * waits for a page that is being read ahead instead of reading it a second time, the buffer has to be locked
+     * @param key   page table key of the page
+     */
+    void awaitRead(long key) {
+        while (inFlight.containsKey(key)) {
+            try {
+                buffer.wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * forgets a dropped table, its reads are cancelled and its files closed before this returns so they can be
+     * deleted, the buffer has to be locked
+     * @param tableID
+     */
+    void tableRemoved(int tableID) {
+        lastPositions.remove(tableID);
+        // waits for a read of the table that is running to finish
+        synchronized (files) {
+            Iterator<PageRead> reads = inFlight.values().iterator();
+            while (reads.hasNext()) {
+                PageRead read = reads.next();
+                if (read.table.getTableID() == tableID) {
+                    read.cancelled = true;
+                    worker.remove(read);
+                    reads.remove();
+                }
+            }
+            try {
+                files.close(tableID);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        buffer.notifyAll();
+    }
+
+    /**
+     * stops the worker, pages it has not read yet are not read
+     */
+    void stop() {
+        worker.shutdownNow();
+        try {
+            worker.awaitTermination(1, TimeUnit.MINUTES);
+            synchronized (files) {
+                files.closeAll();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
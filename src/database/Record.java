@@ -2,6 +2,7 @@ package database;
 
 import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.List;
 
 public class Record implements Comparator<Object> {
 
@@ -22,10 +23,23 @@ public class Record implements Comparator<Object> {
         }
     }
 
+    // used by records that decode their own values, see LazyRecord
+    protected Record() {
+    }
+
     public ArrayList<Object> getData() {
         return data;
     }
 
+    /**
+     * read only access to the values, use this instead of getData when the values are only being looked at
+     * so records read from disk only decode the columns that are used
+     * @return the values of the record
+     */
+    public List<Object> getValues() {
+        return data;
+    }
+
     public ArrayList<Integer> getBitMap() {
         return bitMap;
     }
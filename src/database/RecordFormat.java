@@ -0,0 +1,104 @@
+package database;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Encoding of a record inside a page. The format used by a database is decided by the format version in its
+ * catalog, so databases written with an older format keep being read and written with it.
+ * <p>
+ * Columns are described by their type key (see Catalog.getTypeKey)
+ * 0 integer, 1 double, 2 boolean, 3 char, 4 varchar
+ */
+public abstract class RecordFormat {
+
+    private static final RecordFormat V1 = new RecordFormatV1();
+    private static final RecordFormat V2 = new RecordFormatV2();
+
+    /**
+     * @param formatVersion format version stored in the catalog
+     * @return the record format used by that version
+     */
+    public static RecordFormat forVersion(int formatVersion) {
+        if (formatVersion < Catalog.FORMAT_COMPACT_RECORDS) {
+            return V1;
+        }
+        return V2;
+    }
+
+    /**
+     * writes a record at the position of the buffer
+     * @param bytebuff
+     * @param values    values of the record, null for a null value
+     * @param typeKeys  type of each column
+     */
+    public abstract void write(ByteBuffer bytebuff, List<Object> values, int[] typeKeys);
+
+    /**
+     * finds where each value of an encoded record starts without decoding any value
+     * @param bytebuff  buffer holding the record
+     * @param start     position of the start of the record
+     * @param typeKeys  type of each column
+     * @param positions filled with the position of each value, -1 if the value is null
+     * @return position right after the end of the record
+     */
+    public abstract int findColumns(ByteBuffer bytebuff, int start, int[] typeKeys, int[] positions);
+
+    /**
+     * decodes a single value
+     * @param bytebuff
+     * @param pos       position of the value, as found by findColumns
+     * @param typeKey   type of the value
+     * @return the value
+     */
+    public abstract Object readValue(ByteBuffer bytebuff, int pos, int typeKey);
+
+    /**
+     * @param values    values of a record, null for a null value
+     * @return number of bytes write uses for the record
+     */
+    public abstract int recordSize(List<Object> values);
+
+    /**
+     * decodes every value of the record at the position of the buffer and moves the position past it
+     * @param bytebuff
+     * @param typeKeys  type of each column
+     * @return the record
+     */
+    public Record read(ByteBuffer bytebuff, int[] typeKeys) {
+        return read(bytebuff, typeKeys, new int[typeKeys.length]);
+    }
+
+    /**
+     * decodes every value of the record at the position of the buffer and moves the position past it
+     * @param bytebuff
+     * @param typeKeys  type of each column
+     * @param positions scratch space for the positions of the values, at least as long as typeKeys
+     * @return the record
+     */
+    public Record read(ByteBuffer bytebuff, int[] typeKeys, int[] positions) {
+        int end = findColumns(bytebuff, bytebuff.position(), typeKeys, positions);
+
+        ArrayList<Object> values = new ArrayList<>(typeKeys.length);
+        for (int i = 0; i < typeKeys.length; i++) {
+            if (positions[i] == -1) {
+                values.add(null);
+            } else {
+                values.add(readValue(bytebuff, positions[i], typeKeys[i]));
+            }
+        }
+        bytebuff.position(end);
+        return new Record(values);
+    }
+
+    /**
+     * wraps an encoded record without decoding it, values are decoded as they are read
+     * @param bytebuff  the record from position 0, must not change while the record is in use
+     * @param typeKeys  type of each column
+     * @return the record
+     */
+    public Record readLazy(ByteBuffer bytebuff, int[] typeKeys) {
+        return new LazyRecord(this, bytebuff, typeKeys);
+    }
+}
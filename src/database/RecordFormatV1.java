@@ -0,0 +1,114 @@
+package database;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * The original record format
+ * <pre>
+ * | bitmap length | one int per column, 1 present 0 null | values that are present |
+ * </pre>
+ * integers are 4 bytes, doubles 8, booleans a 4 byte int flag and strings an int length followed by UTF-16 chars
+ */
+class RecordFormatV1 extends RecordFormat {
+
+    @Override
+    public void write(ByteBuffer bytebuff, List<Object> values, int[] typeKeys) {
+        // write length of bitmap
+        // write bitmap itself
+        bytebuff.putInt(values.size());
+        for (Object value : values) {
+            bytebuff.putInt(value == null ? 0 : 1);
+        }
+
+        for (int i = 0; i < values.size(); i++) {
+            Object value = values.get(i);
+            if (value == null) {
+                continue;
+            }
+            switch (typeKeys[i]) {
+                case 0: // int
+                    bytebuff.putInt((Integer) value);
+                    break;
+                case 1: // double
+                    bytebuff.putDouble((Double) value);
+                    break;
+                case 2: // boolean
+                    bytebuff.putInt((Boolean) value ? 1 : 0);
+                    break;
+                case 3: // char
+                case 4: // varchar
+                    String string = (String) value;
+                    int len = string.length();
+                    bytebuff.putInt(len);
+                    for (int c = 0; c < len; c++) {
+                        bytebuff.putChar(string.charAt(c));
+                    }
+                    break;
+            }
+        }
+    }
+
+    @Override
+    public int findColumns(ByteBuffer bytebuff, int start, int[] typeKeys, int[] positions) {
+        int bitMapLen = bytebuff.getInt(start);
+        int pos = start + Integer.BYTES + bitMapLen * Integer.BYTES;
+        for (int i = 0; i < typeKeys.length; i++) {
+            if (bytebuff.getInt(start + Integer.BYTES + i * Integer.BYTES) == 0) {
+                positions[i] = -1;
+                continue;
+            }
+            positions[i] = pos;
+            switch (typeKeys[i]) {
+                case 0: // int
+                case 2: // bool, stored as an int flag
+                    pos += Integer.BYTES;
+                    break;
+                case 1: // double
+                    pos += Double.BYTES;
+                    break;
+                case 3: // char
+                case 4: // varchar
+                    pos += Integer.BYTES + bytebuff.getInt(pos) * Character.BYTES;
+                    break;
+            }
+        }
+        return pos;
+    }
+
+    @Override
+    public Object readValue(ByteBuffer bytebuff, int pos, int typeKey) {
+        switch (typeKey) {
+            case 0: // int
+                return bytebuff.getInt(pos);
+            case 1: // double
+                return bytebuff.getDouble(pos);
+            case 2: // bool
+                return bytebuff.getInt(pos) == 1;
+            default: // char and varchar
+                int len = bytebuff.getInt(pos);
+                char[] chars = new char[len];
+                for (int m = 0; m < len; m++) {
+                    chars[m] = bytebuff.getChar(pos + Integer.BYTES + m * Character.BYTES);
+                }
+                return new String(chars);
+        }
+    }
+
+    @Override
+    public int recordSize(List<Object> values) {
+        int recSize = Integer.BYTES + values.size() * Integer.BYTES; // bitmap length and bitmap
+        for (Object o : values) {
+            if (o instanceof Integer) {
+                recSize += Integer.BYTES;
+            } else if (o instanceof Double) {
+                recSize += Double.BYTES;
+            } else if (o instanceof Boolean) {
+                recSize += Integer.BYTES; // stored as a int flag
+            } else if (o instanceof String) {
+                recSize += Integer.BYTES + ((String) o).length() * Character.BYTES; // length is written before the chars
+            }
+        }
+        return recSize;
+    }
+}
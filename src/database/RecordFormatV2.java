@@ -0,0 +1,212 @@
+package database;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Compact record format
+ * <pre>
+ * | null bitmap, one bit per column, 1 present 0 null | values that are present |
+ * </pre>
+ * integers are 4 bytes, doubles 8 and booleans 1. A string starts with a varint holding its length in bytes
+ * shifted left by one, the low bit is set if the string is UTF-8 and clear if it is Latin-1. Strings that only
+ * use Latin-1 characters (all ASCII text) take one byte per character.
+ */
+class RecordFormatV2 extends RecordFormat {
+
+    // strings of direct buffers are copied through this, so reading one allocates only the String
+    private static final ThreadLocal<byte[]> scratch = ThreadLocal.withInitial(() -> new byte[64]);
+
+    @Override
+    public void write(ByteBuffer bytebuff, List<Object> values, int[] typeKeys) {
+        int numColumns = values.size();
+        int bitMapPos = bytebuff.position();
+        for (int i = 0; i < bitMapBytes(numColumns); i++) {
+            bytebuff.put((byte) 0);
+        }
+
+        for (int i = 0; i < numColumns; i++) {
+            Object value = values.get(i);
+            if (value == null) {
+                continue;
+            }
+            bytebuff.put(bitMapPos + i / 8, (byte) (bytebuff.get(bitMapPos + i / 8) | (1 << (i % 8))));
+            switch (typeKeys[i]) {
+                case 0: // int
+                    bytebuff.putInt((Integer) value);
+                    break;
+                case 1: // double
+                    bytebuff.putDouble((Double) value);
+                    break;
+                case 2: // boolean
+                    bytebuff.put((byte) ((Boolean) value ? 1 : 0));
+                    break;
+                case 3: // char
+                case 4: // varchar
+                    writeString(bytebuff, (String) value);
+                    break;
+            }
+        }
+    }
+
+    private static void writeString(ByteBuffer bytebuff, String string) {
+        int len = string.length();
+        if (isLatin1(string)) {
+            putVarint(bytebuff, len << 1);
+            for (int c = 0; c < len; c++) {
+                bytebuff.put((byte) string.charAt(c));
+            }
+        } else {
+            byte[] utf8 = string.getBytes(StandardCharsets.UTF_8);
+            putVarint(bytebuff, (utf8.length << 1) | 1);
+            bytebuff.put(utf8);
+        }
+    }
+
+    @Override
+    public int findColumns(ByteBuffer bytebuff, int start, int[] typeKeys, int[] positions) {
+        int pos = start + bitMapBytes(typeKeys.length);
+        for (int i = 0; i < typeKeys.length; i++) {
+            if ((bytebuff.get(start + i / 8) & (1 << (i % 8))) == 0) {
+                positions[i] = -1;
+                continue;
+            }
+            positions[i] = pos;
+            switch (typeKeys[i]) {
+                case 0: // int
+                    pos += Integer.BYTES;
+                    break;
+                case 1: // double
+                    pos += Double.BYTES;
+                    break;
+                case 2: // bool
+                    pos += 1;
+                    break;
+                case 3: // char
+                case 4: // varchar
+                    int header = getVarint(bytebuff, pos);
+                    pos += varintSize(header) + (header >>> 1);
+                    break;
+            }
+        }
+        return pos;
+    }
+
+    @Override
+    public Object readValue(ByteBuffer bytebuff, int pos, int typeKey) {
+        switch (typeKey) {
+            case 0: // int
+                return bytebuff.getInt(pos);
+            case 1: // double
+                return bytebuff.getDouble(pos);
+            case 2: // bool
+                return bytebuff.get(pos) == 1;
+            default: // char and varchar
+                int header = getVarint(bytebuff, pos);
+                int len = header >>> 1;
+                int start = pos + varintSize(header);
+                Charset charset = (header & 1) == 1 ? StandardCharsets.UTF_8 : StandardCharsets.ISO_8859_1;
+                if (bytebuff.hasArray()) {
+                    return new String(bytebuff.array(), bytebuff.arrayOffset() + start, len, charset);
+                }
+                // direct buffers have no array, the bytes go through a scratch array the String copies from
+                byte[] bytes = scratch.get();
+                if (bytes.length < len) {
+                    bytes = new byte[Math.max(len, bytes.length * 2)];
+                    scratch.set(bytes);
+                }
+                bytebuff.get(start, bytes, 0, len);
+                return new String(bytes, 0, len, charset);
+        }
+    }
+
+    @Override
+    public int recordSize(List<Object> values) {
+        int recSize = bitMapBytes(values.size());
+        for (Object o : values) {
+            if (o instanceof Integer) {
+                recSize += Integer.BYTES;
+            } else if (o instanceof Double) {
+                recSize += Double.BYTES;
+            } else if (o instanceof Boolean) {
+                recSize += 1;
+            } else if (o instanceof String) {
+                String string = (String) o;
+                int len = isLatin1(string) ? string.length() : utf8Length(string);
+                recSize += varintSize(len << 1) + len;
+            }
+        }
+        return recSize;
+    }
+
+    private static int bitMapBytes(int numColumns) {
+        return (numColumns + 7) / 8;
+    }
+
+    private static boolean isLatin1(String string) {
+        for (int c = 0; c < string.length(); c++) {
+            if (string.charAt(c) > 0xFF) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param string
+     * @return number of bytes String.getBytes(UTF_8) returns for the string
+     */
+    private static int utf8Length(String string) {
+        int len = 0;
+        for (int c = 0; c < string.length(); c++) {
+            char ch = string.charAt(c);
+            if (ch < 0x80) {
+                len += 1;
+            } else if (ch < 0x800) {
+                len += 2;
+            } else if (Character.isHighSurrogate(ch) && c + 1 < string.length()
+                    && Character.isLowSurrogate(string.charAt(c + 1))) {
+                len += 4;
+                c++;
+            } else if (Character.isSurrogate(ch)) {
+                len += 1; // unpaired surrogates are replaced with '?'
+            } else {
+                len += 3;
+            }
+        }
+        return len;
+    }
+
+    // unsigned LEB128, 7 bits per byte with the high bit set on every byte but the last
+
+    private static void putVarint(ByteBuffer bytebuff, int value) {
+        while ((value & ~0x7F) != 0) {
+            bytebuff.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        bytebuff.put((byte) value);
+    }
+
+    private static int getVarint(ByteBuffer bytebuff, int pos) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = bytebuff.get(pos++);
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    private static int varintSize(int value) {
+        int size = 1;
+        while ((value & ~0x7F) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+}
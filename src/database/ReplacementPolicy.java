@@ -0,0 +1,75 @@
+package database;
+
+import java.util.function.LongPredicate;
+
+/**
+ * Decides which page gets evicted from the PageBuffer once it is full.
+ * <p>
+ * Pages are identified by their key in the buffer's page table. The buffer tells the policy
+ * whenever a page is loaded, accessed or removed, and asks it for a victim when it needs a free frame.
+ */
+public interface ReplacementPolicy {
+
+    // returned by evict when no page may be evicted
+    long NO_VICTIM = -1;
+
+    /**
+     * a page was loaded into the buffer
+     * @param key
+     */
+    void pageAdded(long key);
+
+    /**
+     * a page already in the buffer was accessed
+     * @param key
+     */
+    void pageAccessed(long key);
+
+    /**
+     * a page was removed from the buffer without being chosen as a victim (ex. dropped table)
+     * @param key
+     */
+    void pageRemoved(long key);
+
+    /**
+     * chooses the page to evict and stops tracking it
+     * @param evictable     tells if a page may be evicted, pinned pages may not
+     * @return key of the evicted page or NO_VICTIM if no page may be evicted
+     */
+    long evict(LongPredicate evictable);
+
+    /**
+     * lists the pages that would be evicted next, in the order evict would choose them, without evicting them
+     * @param count         most pages to list
+     * @param evictable     tells if a page may be evicted, pinned pages may not
+     * @return keys of at most count pages, next victim first
+     */
+    long[] nextVictims(int count, LongPredicate evictable);
+
+    /**
+     * @return name the policy is selected by at startup
+     */
+    String getName();
+
+    /**
+     * creates the replacement policy with the given name
+     * @param name          lru, clock, 2q or lru-k
+     * @param bufferSize    number of pages the buffer holds
+     * @return the policy
+     */
+    static ReplacementPolicy forName(String name, int bufferSize) {
+        switch (name.toLowerCase()) {
+            case "lru":
+                return new LruPolicy();
+            case "clock":
+                return new ClockPolicy(bufferSize);
+            case "2q":
+                return new TwoQueuePolicy(bufferSize);
+            case "lru-k":
+            case "lru-2":
+                return new LruKPolicy(bufferSize, 2);
+        }
+        throw new IllegalArgumentException(
+                String.format("UNKNOWN REPLACEMENT POLICY %s: expected one of lru, clock, 2q, lru-k", name));
+    }
+}
@@ -7,6 +7,10 @@ public class SchemaTable {
     private String tableName;
     private ArrayList<Attribute> attributes;
     private ArrayList<Integer> pageOrder;
+    // pages are compressed before they are written to disk
+    private boolean compressed;
+    // page buffer frames reserved for the table, 0 if it has none
+    private int bufferQuota;
 
     public SchemaTable(int tableID, String tableName, ArrayList<Attribute> attributes, ArrayList<Integer> pageOrder) {
         this.tableID = tableID;
@@ -31,4 +35,20 @@ public class SchemaTable {
     public ArrayList<Integer> getPageOrder() {
         return pageOrder;
     }
+
+    public boolean isCompressed() {
+        return compressed;
+    }
+
+    public void setCompressed(boolean compressed) {
+        this.compressed = compressed;
+    }
+
+    public int getBufferQuota() {
+        return bufferQuota;
+    }
+
+    public void setBufferQuota(int bufferQuota) {
+        this.bufferQuota = bufferQuota;
+    }
 }
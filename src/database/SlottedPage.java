@@ -0,0 +1,198 @@
+package database;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Binary layout of a slotted page
+ * <pre>
+ * | record count | heap start | slot 0 | slot 1 | ... | free space | record heap |
+ * </pre>
+ * Each slot holds the offset and length of one record. Slots are kept in primary key order while the record
+ * bytes are appended to the heap, which grows from the end of the page towards the slot array. Inserting a
+ * record in the middle of the page only shifts slot entries, and a record can be found from its slot number
+ * without decoding the records before it. Deleted records leave a hole in the heap until the page is
+ * compacted, compaction moves record bytes but never changes a record's slot number.
+ */
+public class SlottedPage {
+
+    // record count and heap start
+    public static final int HEADER_SIZE = 2 * Integer.BYTES;
+    // record offset and record length
+    public static final int SLOT_SIZE = 2 * Integer.BYTES;
+
+    private static final int NUM_RECORDS_POS = 0;
+    private static final int HEAP_START_POS = Integer.BYTES;
+
+    // the page image, always accessed with absolute positions
+    private final ByteBuffer buffer;
+
+    /**
+     * wraps an existing page image
+     * @param buffer    page image, position 0 is the start of the page
+     */
+    public SlottedPage(ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    /**
+     * clears the buffer and writes the header of a page with no records
+     * @param buffer    buffer of one page size
+     * @return  the empty page
+     */
+    public static SlottedPage format(ByteBuffer buffer) {
+        buffer.clear();
+        SlottedPage page = new SlottedPage(buffer);
+        page.setNumRecords(0);
+        page.setHeapStart(buffer.capacity());
+        return page;
+    }
+
+    public int getNumRecords() {
+        return buffer.getInt(NUM_RECORDS_POS);
+    }
+
+    private void setNumRecords(int numRecords) {
+        buffer.putInt(NUM_RECORDS_POS, numRecords);
+    }
+
+    private int getHeapStart() {
+        return buffer.getInt(HEAP_START_POS);
+    }
+
+    private void setHeapStart(int heapStart) {
+        buffer.putInt(HEAP_START_POS, heapStart);
+    }
+
+    private static int slotPosition(int slot) {
+        return HEADER_SIZE + slot * SLOT_SIZE;
+    }
+
+    private int getRecordOffset(int slot) {
+        return buffer.getInt(slotPosition(slot));
+    }
+
+    private int getRecordLength(int slot) {
+        return buffer.getInt(slotPosition(slot) + Integer.BYTES);
+    }
+
+    private void setSlot(int slot, int offset, int length) {
+        buffer.putInt(slotPosition(slot), offset);
+        buffer.putInt(slotPosition(slot) + Integer.BYTES, length);
+    }
+
+    /**
+     * @return bytes between the end of the slot array and the start of the heap
+     */
+    public int getFreeSpace() {
+        return getHeapStart() - slotPosition(getNumRecords());
+    }
+
+    /**
+     * @param slot
+     * @return a view of the bytes of the record in the given slot, positioned at the start of the record
+     */
+    public ByteBuffer getRecord(int slot) {
+        checkSlot(slot, getNumRecords());
+        ByteBuffer view = buffer.duplicate();
+        int offset = getRecordOffset(slot);
+        view.limit(offset + getRecordLength(slot));
+        view.position(offset);
+        return view.slice();
+    }
+
+    /**
+     * inserts a record before the record currently in the given slot, the slots after it move up by one
+     * @param slot     slot the record gets, getNumRecords() to append
+     * @param record   encoded record, from its position to its limit
+     * @return false if the page does not have room for the record even after compacting
+     */
+    public boolean insertRecord(int slot, ByteBuffer record) {
+        int numRecords = getNumRecords();
+        checkSlot(slot, numRecords + 1);
+        int length = record.remaining();
+        if (getFreeSpace() < length + SLOT_SIZE) {
+            compact();
+            if (getFreeSpace() < length + SLOT_SIZE) {
+                return false;
+            }
+        }
+
+        int offset = getHeapStart() - length;
+        ByteBuffer heap = buffer.duplicate();
+        heap.position(offset);
+        heap.put(record);
+        setHeapStart(offset);
+
+        moveSlots(slot, numRecords, 1);
+        setSlot(slot, offset, length);
+        setNumRecords(numRecords + 1);
+        return true;
+    }
+
+    /**
+     * removes the record in the given slot, the slots after it move down by one
+     * the record bytes are reclaimed the next time the page is compacted
+     * @param slot
+     */
+    public void deleteRecord(int slot) {
+        int numRecords = getNumRecords();
+        checkSlot(slot, numRecords);
+        moveSlots(slot + 1, numRecords, -1);
+        setNumRecords(numRecords - 1);
+        if (numRecords == 1) {
+            setHeapStart(buffer.capacity());
+        }
+    }
+
+    /**
+     * packs the records at the end of the page so all free space is between the slots and the heap
+     * slot numbers are unchanged
+     */
+    public void compact() {
+        int numRecords = getNumRecords();
+        int heapStart = getHeapStart();
+        byte[] heap = new byte[buffer.capacity() - heapStart];
+        ByteBuffer old = buffer.duplicate();
+        old.position(heapStart);
+        old.get(heap);
+
+        int end = buffer.capacity();
+        for (int slot = 0; slot < numRecords; slot++) {
+            int length = getRecordLength(slot);
+            end -= length;
+            ByteBuffer dest = buffer.duplicate();
+            dest.position(end);
+            dest.put(heap, getRecordOffset(slot) - heapStart, length);
+            setSlot(slot, end, length);
+        }
+        setHeapStart(end);
+    }
+
+    /**
+     * moves the slots in [from, to) by the given number of slots
+     */
+    private void moveSlots(int from, int to, int by) {
+        if (from >= to) {
+            return;
+        }
+        int start = slotPosition(from);
+        int end = slotPosition(to);
+        int shift = by * SLOT_SIZE;
+        // copy away from the direction of the move so overlapping slots are not overwritten before being read
+        if (shift > 0) {
+            for (int pos = end - Integer.BYTES; pos >= start; pos -= Integer.BYTES) {
+                buffer.putInt(pos + shift, buffer.getInt(pos));
+            }
+        } else {
+            for (int pos = start; pos < end; pos += Integer.BYTES) {
+                buffer.putInt(pos + shift, buffer.getInt(pos));
+            }
+        }
+    }
+
+    private static void checkSlot(int slot, int numSlots) {
+        if (slot < 0 || slot >= numSlots) {
+            throw new IndexOutOfBoundsException(String.format("SLOT %d OUT OF RANGE, PAGE HAS %d SLOTS", slot, numSlots));
+        }
+    }
+}
@@ -2,6 +2,7 @@ package database;
 
 import bPlusTree.BPlusTree;
 import exception.DuplicatePrimaryKeyException;
+import exception.RecordTooLargeException;
 
 import java.lang.reflect.Array;
 import java.util.ArrayList;
@@ -20,47 +21,49 @@ public class StorageManager {
         this.pageSize = pageSize;
     }
 
+    /**
+     * checks that a record fits in an empty page, a page is never written larger than the page size
+     * @param record
+     * @throws RecordTooLargeException if the record does not fit
+     */
+    public void checkRecordFits(Record record) {
+        int size = SlottedPage.HEADER_SIZE + SlottedPage.SLOT_SIZE
+                + buffer.getRecordFormat().recordSize(record.getValues());
+        if (size > pageSize) {
+            throw new RecordTooLargeException(
+                    String.format("ROW TAKES %d BYTES, MORE THAN FIT IN A PAGE OF %d BYTES", size, pageSize));
+        }
+    }
+
     public ArrayList<Integer> insertRecordIntoPage(Table table, Record record) {
 
         if (table.getNumPages() == 0) {
-            Page newPage = new Page(pageSize);
-            table.getPages().add(newPage.getPageID());
+            Page newPage = new Page(pageSize, buffer.getRecordFormat());
+            buffer.addToPageOrder(table, 0, newPage.getPageID());
             buffer.addPage(newPage, table);
-        } else {
-            for (int page : table.getPages()) {
-                SchemaTable curSchema = catalog.getSchema().get(table.getTableName());
-                Page current = buffer.getPage(table, page);
-                for (int rIndex = 0; rIndex < current.getContents().size(); rIndex++) {
-                    Record rec = current.getContents().get(rIndex);
-                    // involves schema kailey says no no
-                    if (catalog.compareKeys(curSchema, record, rec)) { // schema part
-                        current.getContents().add(rIndex, record); // check if this inserts before it at that index may
-                                                                   // do that
-                        current.setNumRecords(current.getNumRecords() + 1);
-                        if (current.isFull() == true) {
-                            buffer.splitPage(table, current);
-                        }
-                        // these 3 lines added for indexing
-                        ArrayList a = new ArrayList();
-                        a.add(rIndex);
-                        a.add(page);
-                        return a;
-                    }
-                }
-            }
         }
 
-        // if it doesn't get inserted get last page in table
-        Page last = buffer.getPage(table, table.getPages().size() - 1);
-        int index = last.addRecord(record);
-        if (last.isFull()) {
-            buffer.splitPage(table, last);
+        // the free space map knows which page the record goes on, only that page is read
+        int pageID = buffer.findInsertPage(table, record);
+        SchemaTable curSchema = catalog.getSchema().get(table.getTableName());
+        Page current = buffer.getPage(table, pageID);
+        int rIndex = 0;
+        while (rIndex < current.getContents().size()
+                && !catalog.compareKeys(curSchema, record, current.getContents().get(rIndex))) {
+            rIndex++;
+        }
+        current.insertRecord(rIndex, record);
+        buffer.updateFreeSpace(table, current);
+        // pinned until it fits, so it is never written while it is too big
+        if (current.isFull()) {
+            buffer.splitPage(table, current);
         }
+        buffer.releasePage(table, current);
         // these 3 lines added for indexing
-        ArrayList b = new ArrayList();
-        b.add(index);
-        b.add(last.getPageID());
-        return b;
+        ArrayList a = new ArrayList();
+        a.add(rIndex);
+        a.add(pageID);
+        return a;
     }
 
     /**
@@ -75,18 +78,25 @@ public class StorageManager {
         ArrayList<ArrayList<Object>> allRecords = new ArrayList<>();
         // foreach value in the row
         ArrayList<Integer> pageIDs = table.getPages();
-        // for each page
-        for (int pageNum = 0; pageNum < pageIDs.size(); pageNum++) {
-            Page page = buffer.getPage(table, pageNum);
-            ArrayList<Record> records = page.getContents();
-            // for each record
-            for (Record record : records) {
-                // removes value from record values
-                ArrayList<Object> values = record.getData();
-                values.remove(attrIdx);
-
-                allRecords.add(values);
+        // the scan reads the pages it does not find in the buffer into its own ring of frames
+        buffer.startScan(table);
+        try {
+            // for each page
+            for (int pageNum = 0; pageNum < pageIDs.size(); pageNum++) {
+                Page page = buffer.getPage(table, pageIDs.get(pageNum));
+                ArrayList<Record> records = page.getContents();
+                // for each record
+                for (Record record : records) {
+                    // removes value from record values
+                    ArrayList<Object> values = record.getData();
+                    values.remove(attrIdx);
+
+                    allRecords.add(values);
+                }
+                buffer.releasePage(table, page);
             }
+        } finally {
+            buffer.endScan(table);
         }
 
         return allRecords;
@@ -104,18 +114,24 @@ public class StorageManager {
         ArrayList<ArrayList<Object>> allRecords = new ArrayList<>();
         // foreach value in the row
         ArrayList<Integer> pageIDs = table.getPages();
-        // for each page
-        for (int pageNum = 0; pageNum < pageIDs.size(); pageNum++) {
-            Page page = buffer.getPage(table, pageNum);
-            ArrayList<Record> records = page.getContents();
-            // for each record
-            for (Record record : records) {
-                // adds default value to record values
-                ArrayList<Object> values = record.getData();
-                values.add(defaultVal);
-
-                allRecords.add(values);
+        buffer.startScan(table);
+        try {
+            // for each page
+            for (int pageNum = 0; pageNum < pageIDs.size(); pageNum++) {
+                Page page = buffer.getPage(table, pageIDs.get(pageNum));
+                ArrayList<Record> records = page.getContents();
+                // for each record
+                for (Record record : records) {
+                    // adds default value to record values
+                    ArrayList<Object> values = record.getData();
+                    values.add(defaultVal);
+
+                    allRecords.add(values);
+                }
+                buffer.releasePage(table, page);
             }
+        } finally {
+            buffer.endScan(table);
         }
 
         return allRecords;
@@ -131,14 +147,20 @@ public class StorageManager {
         ArrayList<Record> allRecords = new ArrayList<>();
         // foreach value in the row
         ArrayList<Integer> pageIDs = table.getPages();
-        // for each page
-        for (int pageNum = 0; pageNum < pageIDs.size(); pageNum++) {
-            Page page = buffer.getPage(table, pageNum);
-            ArrayList<Record> records = page.getContents();
-            // for each record
-            for (Record record : records) {
-                allRecords.add(record);
+        buffer.startScan(table);
+        try {
+            // for each page
+            for (int pageNum = 0; pageNum < pageIDs.size(); pageNum++) {
+                Page page = buffer.getPage(table, pageIDs.get(pageNum));
+                ArrayList<Record> records = page.getContents();
+                // for each record
+                for (Record record : records) {
+                    allRecords.add(record);
+                }
+                buffer.releasePage(table, page);
             }
+        } finally {
+            buffer.endScan(table);
         }
         return allRecords;
     }
@@ -146,23 +168,27 @@ public class StorageManager {
 
     public void insertUsingRP(ArrayList<Integer> rp, Record record, Table table){
         if (table.getNumPages() == 0) {
-            Page newPage = new Page(pageSize);
-            table.getPages().add(newPage.getPageID());
-            newPage.getContents().add(rp.get(0), record);
-            newPage.setNumRecords(newPage.getNumRecords()+1);
+            Page newPage = new Page(pageSize, buffer.getRecordFormat());
+            buffer.addToPageOrder(table, 0, newPage.getPageID());
             buffer.addPage(newPage, table);
+            // pinned before the record goes in, like any page that may need a split
+            newPage = buffer.getPage(table, newPage.getPageID());
+            newPage.insertRecord(rp.get(0), record);
+            buffer.updateFreeSpace(table, newPage);
             if (newPage.isFull()) {
                 buffer.splitPage(table, newPage);
                 // bPlusSplitRepair(newPage, table, database); if bplus split worked
             }
+            buffer.releasePage(table, newPage);
         } else {
             Page current = buffer.getPage(table, rp.get(1));
-            current.getContents().add(rp.get(0), record);
-            current.setNumRecords(current.getNumRecords() + 1);
+            current.insertRecord(rp.get(0), record);
+            buffer.updateFreeSpace(table, current);
             if (current.isFull() == true) {
                 buffer.splitPage(table, current);
                 // bPlusSplitRepair(newPage, table, database); if bplus split worked
             }
+            buffer.releasePage(table, current);
         }
     }
 
@@ -170,6 +196,28 @@ public class StorageManager {
         return buffer;
     }
 
+    /**
+     * @param table
+     * @return copy of the page buffer counters of the table since they were last reset
+     */
+    public BufferStats getBufferStats(Table table) {
+        return buffer.getTableStats(table.getTableID());
+    }
+
+    /**
+     * @return copy of the page buffer counters of every table together
+     */
+    public BufferStats getBufferStats() {
+        return buffer.getTotalStats();
+    }
+
+    /**
+     * sets the page buffer counters back to 0
+     */
+    public void resetBufferStats() {
+        buffer.resetStats();
+    }
+
     private void bPlusSplitRepair(Page newPage, Table table, Database db) {
         int newPageID = newPage.getPageID();
 
@@ -0,0 +1,353 @@
+package database;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps table files open between page reads and writes.
+ * <p>
+ * Holds at most maxOpenFiles FileChannels, keyed by table and segment. When another file needs to be opened the
+ * least recently used channel is closed. All reads and writes are positional so channels never need to seek.
+ * <p>
+ * A table is stored in segment files of segmentPages pages each. The first segment is the file named by the table
+ * ID and starts with the page count, segment n after it is named tableID.n. Positions are given as if the table
+ * was one file, the page count followed by the pages, and mapped to a segment and an offset in it, so a page never
+ * spans two segments. Databases from before segmented files keep each table in one file.
+ * <p>
+ * Segments grow a whole extent of EXTENT_PAGES pages at a time, filled with zeros, so the file system can keep the
+ * pages of a segment together instead of growing the file one page per write.
+ */
+public class TableFileCache {
+
+    // pages a segment grows by at a time
+    static final int EXTENT_PAGES = 64;
+
+    private final String dbLoc;
+
+    private final int maxOpenFiles;
+
+    private final int pageSize;
+
+    // bytes of pages in a segment, 0 if each table is one file
+    private final long segmentSize;
+
+    // segment key (see PageBuffer.pageKey) -> open channel, least recently used first
+    private final LinkedHashMap<Long, FileChannel> channels = new LinkedHashMap<>(16, 0.75f, true);
+
+    // segment key -> size of the segment file, including zeros not written with a page yet
+    private final HashMap<Long, Long> allocated = new HashMap<>();
+
+    /**
+     * @param dbLoc
+     * @param maxOpenFiles
+     * @param pageSize
+     * @param segmentPages  pages in a segment file, 0 to keep each table in one file
+     */
+    public TableFileCache(String dbLoc, int maxOpenFiles, int pageSize, int segmentPages) {
+        this.dbLoc = dbLoc;
+        this.maxOpenFiles = maxOpenFiles;
+        this.pageSize = pageSize;
+        this.segmentSize = (long) segmentPages * pageSize;
+    }
+
+    /**
+     * @param dbLoc
+     * @param tableID
+     * @param segment
+     * @return path of a segment file of a table
+     */
+    static Path segmentPath(String dbLoc, int tableID, int segment) {
+        if (segment == 0) {
+            return Paths.get(String.format("%s\\%d", dbLoc, tableID));
+        }
+        return Paths.get(String.format("%s\\%d.%d", dbLoc, tableID, segment));
+    }
+
+    /**
+     * deletes every segment file of a table, the channels of the table have to be closed first
+     * @param dbLoc
+     * @param tableID
+     * @throws IOException
+     */
+    public static void deleteFiles(String dbLoc, int tableID) throws IOException {
+        Files.deleteIfExists(segmentPath(dbLoc, tableID, 0));
+        for (int segment = 1; Files.deleteIfExists(segmentPath(dbLoc, tableID, segment)); segment++) {
+        }
+    }
+
+    /**
+     * @param position  position in the table
+     * @return segment holding the byte at the position
+     */
+    int segmentOf(long position) {
+        if (segmentSize == 0 || position < Integer.BYTES) {
+            return 0;
+        }
+        return (int) ((position - Integer.BYTES) / segmentSize);
+    }
+
+    /**
+     * @param segment
+     * @return position in the table the segment file starts at, the first segment also holds the page count
+     */
+    long segmentStart(int segment) {
+        return segment == 0 ? 0 : Integer.BYTES + segment * segmentSize;
+    }
+
+    /**
+     * @param segment
+     * @return position in the table right after the segment
+     */
+    long segmentEnd(int segment) {
+        return segmentSize == 0 ? Long.MAX_VALUE : Integer.BYTES + (segment + 1) * segmentSize;
+    }
+
+    /**
+     * returns the open channel of a segment file, opening (and creating) the file if needed
+     * @param tableID
+     * @param segment
+     * @return channel for reading and writing the segment file
+     * @throws IOException
+     */
+    public FileChannel getChannel(int tableID, int segment) throws IOException {
+        return openChannel(tableID, segment, true);
+    }
+
+    /**
+     * returns the open channel of a segment file, opening the file if needed
+     * @param tableID
+     * @param segment
+     * @param create    true to create the file if there is none, reads never create a file
+     * @return channel for reading and writing the segment file, null if there is no such file and create is false
+     * @throws IOException
+     */
+    private FileChannel openChannel(int tableID, int segment, boolean create) throws IOException {
+        long key = PageBuffer.pageKey(tableID, segment);
+        FileChannel channel = channels.get(key);
+        if (channel != null && channel.isOpen()) {
+            return channel;
+        }
+        Path path = segmentPath(dbLoc, tableID, segment);
+        if (!create && !Files.exists(path)) {
+            return null;
+        }
+        if (channels.size() >= maxOpenFiles) {
+            Iterator<Map.Entry<Long, FileChannel>> lru = channels.entrySet().iterator();
+            Map.Entry<Long, FileChannel> eldest = lru.next();
+            lru.remove();
+            allocated.remove(eldest.getKey());
+            // force covers only open files, so a file is forced before it is closed
+            eldest.getValue().force(false);
+            eldest.getValue().close();
+        }
+        if (create) {
+            channel = FileChannel.open(path,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+        } else {
+            channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        }
+        channels.put(key, channel);
+        return channel;
+    }
+
+    /**
+     * reads from the table at the given position until the buffer is full or the end of a segment file,
+     * a segment file that does not exist reads as its end
+     * @param tableID
+     * @param buffer
+     * @param position
+     * @return number of bytes read
+     * @throws IOException
+     */
+    public int read(int tableID, ByteBuffer buffer, long position) throws IOException {
+        int total = 0;
+        int limit = buffer.limit();
+        while (buffer.hasRemaining()) {
+            long at = position + total;
+            int segment = segmentOf(at);
+            FileChannel channel = openChannel(tableID, segment, false);
+            if (channel == null) {
+                break;
+            }
+            // the part of the buffer that lies in this segment
+            buffer.limit((int) Math.min(limit, buffer.position() + (segmentEnd(segment) - at)));
+            int read = channel.read(buffer, at - segmentStart(segment));
+            buffer.limit(limit);
+            if (read < 0) {
+                break;
+            }
+            total += read;
+        }
+        return total;
+    }
+
+    /**
+     * reads a region of the table, bytes past the end of a segment file read as 0
+     * @param tableID
+     * @param position
+     * @param length
+     * @return buffer positioned at the start of the region with length bytes remaining
+     * @throws IOException
+     */
+    public ByteBuffer read(int tableID, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        read(tableID, buffer, position);
+        buffer.clear();
+        return buffer;
+    }
+
+    /**
+     * reads a region of the table into a buffer borrowed from a pool, bytes past the end of a segment file read as 0
+     * @param tableID
+     * @param position
+     * @param length    at most a page
+     * @param pool
+     * @return buffer positioned at the start of the region with length bytes remaining, handed back to the pool
+     *         by the caller once it is done with the bytes
+     * @throws IOException
+     */
+    public ByteBuffer read(int tableID, long position, int length, BufferPool pool) throws IOException {
+        ByteBuffer buffer = pool.acquire();
+        buffer.limit(length);
+        try {
+            read(tableID, buffer, position);
+        } catch (IOException e) {
+            pool.release(buffer);
+            throw e;
+        }
+        // the buffer still holds whatever was read into it last
+        while (buffer.hasRemaining()) {
+            buffer.put((byte) 0);
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * writes the remaining bytes of the buffer to the table at the given position
+     * @param tableID
+     * @param buffer
+     * @param position
+     * @throws IOException
+     */
+    public void write(int tableID, ByteBuffer buffer, long position) throws IOException {
+        int start = buffer.position();
+        int limit = buffer.limit();
+        while (buffer.hasRemaining()) {
+            long at = position + buffer.position() - start;
+            int segment = segmentOf(at);
+            FileChannel channel = getChannel(tableID, segment);
+            buffer.limit((int) Math.min(limit, buffer.position() + (segmentEnd(segment) - at)));
+            long offset = at - segmentStart(segment);
+            preallocate(tableID, segment, channel, offset + buffer.remaining());
+            while (buffer.hasRemaining()) {
+                offset += channel.write(buffer, offset);
+            }
+            buffer.limit(limit);
+        }
+    }
+
+    /**
+     * grows a segment file to the end of the extent holding the given offset if it is shorter
+     * @param tableID
+     * @param segment
+     * @param channel
+     * @param end   offset in the segment file right after the bytes about to be written
+     * @throws IOException
+     */
+    private void preallocate(int tableID, int segment, FileChannel channel, long end) throws IOException {
+        long key = PageBuffer.pageKey(tableID, segment);
+        Long size = allocated.get(key);
+        if (size == null) {
+            size = channel.size();
+        }
+        if (end > size) {
+            // extents are counted from the first page of the segment
+            long base = segment == 0 ? Integer.BYTES : 0;
+            long extent = (long) EXTENT_PAGES * pageSize;
+            long target = base + (end - base + extent - 1) / extent * extent;
+            if (segmentSize != 0) {
+                target = Math.min(target, base + segmentSize);
+            }
+            target = Math.max(target, end);
+            ByteBuffer zeros = ByteBuffer.allocate((int) Math.min(target - size, extent));
+            while (size < target) {
+                zeros.clear();
+                zeros.limit((int) Math.min(zeros.capacity(), target - size));
+                size += channel.write(zeros, size);
+            }
+        }
+        allocated.put(key, size);
+    }
+
+    /**
+     * @param tableID
+     * @return size of the table as if it was one file, counting zeros an extent was filled with
+     * @throws IOException
+     */
+    public long size(int tableID) throws IOException {
+        int last = 0;
+        while (segmentSize != 0 && Files.exists(segmentPath(dbLoc, tableID, last + 1))) {
+            last++;
+        }
+        FileChannel channel = openChannel(tableID, last, false);
+        return channel == null ? 0 : segmentStart(last) + channel.size();
+    }
+
+    /**
+     * makes sure everything written so far reaches the table files
+     * writes already went to the OS through the channels so there is nothing left to do
+     * @throws IOException
+     */
+    public void flush() throws IOException {
+    }
+
+    /**
+     * makes sure everything written so far is on disk and survives a crash of the machine
+     * @throws IOException
+     */
+    public void force() throws IOException {
+        flush();
+        for (FileChannel channel : channels.values()) {
+            channel.force(false);
+        }
+    }
+
+    /**
+     * closes the channels of a table, used before its files are deleted
+     * @param tableID
+     * @throws IOException
+     */
+    public void close(int tableID) throws IOException {
+        Iterator<Map.Entry<Long, FileChannel>> it = channels.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Long, FileChannel> entry = it.next();
+            if ((int) (entry.getKey() >>> 32) == tableID) {
+                it.remove();
+                allocated.remove(entry.getKey());
+                entry.getValue().close();
+            }
+        }
+    }
+
+    /**
+     * closes every open channel
+     * @throws IOException
+     */
+    public void closeAll() throws IOException {
+        for (FileChannel channel : channels.values()) {
+            channel.close();
+        }
+        channels.clear();
+        allocated.clear();
+    }
+}
@@ -0,0 +1,129 @@
+package database;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.function.LongPredicate;
+
+/**
+ * 2Q replacement (Johnson and Shasha). Pages seen for the first time go into a FIFO (a1in). Only pages that
+ * are referenced again after falling out of a1in, while still remembered in the ghost queue (a1out),
+ * are promoted into the main LRU queue (am). A single large scan therefore only cycles through a1in
+ * and leaves the hot pages in am alone.
+ */
+public class TwoQueuePolicy implements ReplacementPolicy {
+
+    // first time pages, FIFO order
+    private final LinkedHashSet<Long> a1in = new LinkedHashSet<>();
+
+    // keys of pages recently evicted from a1in, no page data is kept for these
+    private final LinkedHashSet<Long> a1out = new LinkedHashSet<>();
+
+    // hot pages, LRU order
+    private final LinkedHashSet<Long> am = new LinkedHashSet<>();
+
+    private final int kin;
+
+    private final int kout;
+
+    public TwoQueuePolicy(int bufferSize) {
+        // sizes suggested by the 2Q paper: a1in 25% of the buffer, a1out 50%
+        kin = Math.max(1, bufferSize / 4);
+        kout = Math.max(1, bufferSize / 2);
+    }
+
+    public void pageAdded(long key) {
+        if (a1out.remove(key)) {
+            am.add(key);
+        } else if (!am.contains(key)) {
+            a1in.add(key);
+        }
+    }
+
+    public void pageAccessed(long key) {
+        if (am.remove(key)) {
+            am.add(key);
+        }
+        // hits in a1in are ignored, correlated references right after a load should not promote a page
+    }
+
+    public void pageRemoved(long key) {
+        a1in.remove(key);
+        am.remove(key);
+    }
+
+    public long evict(LongPredicate evictable) {
+        long key;
+        if (a1in.size() > kin || am.isEmpty()) {
+            key = removeFirst(a1in, evictable);
+            if (key == NO_VICTIM) {
+                return removeFirst(am, evictable);
+            }
+        } else {
+            key = removeFirst(am, evictable);
+            if (key != NO_VICTIM) {
+                return key;
+            }
+            key = removeFirst(a1in, evictable);
+            if (key == NO_VICTIM) {
+                return NO_VICTIM;
+            }
+        }
+        // remember pages evicted from a1in so a second reference promotes them
+        a1out.add(key);
+        if (a1out.size() > kout) {
+            removeFirst(a1out, k -> true);
+        }
+        return key;
+    }
+
+    public long[] nextVictims(int count, LongPredicate evictable) {
+        long[] victims = new long[count];
+        int found;
+        // same queue order as evict
+        if (a1in.size() > kin || am.isEmpty()) {
+            found = listFirst(a1in, evictable, victims, 0);
+            found = listFirst(am, evictable, victims, found);
+        } else {
+            found = listFirst(am, evictable, victims, 0);
+            found = listFirst(a1in, evictable, victims, found);
+        }
+        return Arrays.copyOf(victims, found);
+    }
+
+    public String getName() {
+        return "2q";
+    }
+
+    /**
+     * adds the keys of the queue that may be evicted to victims, in queue order, until victims is full
+     * @return number of keys in victims
+     */
+    private static int listFirst(LinkedHashSet<Long> queue, LongPredicate evictable, long[] victims, int found) {
+        for (Iterator<Long> keys = queue.iterator(); keys.hasNext() && found < victims.length; ) {
+            long key = keys.next();
+            if (evictable.test(key)) {
+                victims[found++] = key;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * removes the first key of the queue that may be evicted
+     * @param queue
+     * @param evictable
+     * @return the key or NO_VICTIM if there is none
+     */
+    private static long removeFirst(LinkedHashSet<Long> queue, LongPredicate evictable) {
+        Iterator<Long> keys = queue.iterator();
+        while (keys.hasNext()) {
+            long key = keys.next();
+            if (evictable.test(key)) {
+                keys.remove();
+                return key;
+            }
+        }
+        return NO_VICTIM;
+    }
+}
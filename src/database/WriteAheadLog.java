@@ -0,0 +1,545 @@
+package database;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Redo log of the statements that changed the database.
+ * <p>
+ * When a statement ends the buffer appends a commit entry holding the pages the statement changed as they are
+ * written to the table file, the pages it added to page orders and, after DDL, the definition of the table it
+ * created or changed. Replaying the entries in order brings the table files and the catalog back to the last
+ * committed statement, so dirty pages only have to reach the table files when they are evicted or the database
+ * shuts down. The log is the journal of the catalog as well, the catalog file is only written at checkpoints and
+ * at shutdown, so a schema change is logged in the same time however many tables and pages there are.
+ * <p>
+ * A page evicted before the statement changing it ends is logged in a spill entry, together with what the table
+ * file held for the page before the statement. Recovery replays the page if the statement committed and puts the
+ * old contents back if it did not.
+ * <p>
+ * A checkpoint entry lists the dirty pages of the buffer and the LSN of the oldest change of each that is not in
+ * the table file yet. Entries older than all of them are no longer needed and are cut from the front of the log.
+ * <p>
+ * Entries reach the operating system when they are appended, so they survive the database process crashing.
+ * Forcing them to disk is batched (group commit): the log is forced once groupCommit commits are waiting or
+ * groupDelay milliseconds after the first of them, whichever comes first. A page is never written to its table
+ * file before the entries logging it are forced.
+ * <p>
+ * The file starts with the LSN of its first entry and the page size, each entry is the length of its payload,
+ * the CRC32 of the payload, the entry kind and the payload. The LSN of an entry is the log position right after
+ * it counted from when the log was created, so LSNs keep growing when the log is cleared.
+ */
+public class WriteAheadLog {
+
+    // LSN of the first entry (long) and page size (int)
+    static final int HEADER_SIZE = Long.BYTES + Integer.BYTES;
+
+    // payload length (int), checksum (int) and kind (byte) before each payload
+    private static final int ENTRY_HEADER_SIZE = 2 * Integer.BYTES + 1;
+
+    // entry kinds
+    // the changes of a statement that ended
+    static final byte ENTRY_COMMIT = 1;
+    // a page written to its table file while a statement was still changing it
+    static final byte ENTRY_SPILL = 2;
+    // the dirty page table of a checkpoint
+    static final byte ENTRY_CHECKPOINT = 3;
+    // a table replaced by a new definition under a new ID, at the start of the statement that fills it: the drop of
+    // the old table and the new definition, replayed only once the statement commits
+    static final byte ENTRY_REPLACE = 4;
+
+    // record types in an entry payload
+    // a page as it is written to the table file: tableID, pageID, length, bytes
+    static final byte RECORD_PAGE = 1;
+    // the page order of a table: tableID, number of pages, pageIDs, only written by older versions
+    static final byte RECORD_PAGE_ORDER = 2;
+    // the whole catalog as Catalog.toBytes returns it: length, bytes, only written by older versions
+    static final byte RECORD_CATALOG = 3;
+    // a dropped table: tableID
+    static final byte RECORD_DROP = 4;
+    // the table file contents of a page before a statement spilled it: tableID, pageID, length, bytes,
+    // length -1 and no bytes if the page was never written
+    static final byte RECORD_UNDO = 5;
+    // a dirty page at a checkpoint: tableID, pageID, LSN the entry with its oldest change not yet written starts at
+    static final byte RECORD_DIRTY_PAGE = 6;
+    // a table created or changed, as Catalog.tableToBytes returns it: length, bytes
+    static final byte RECORD_TABLE = 7;
+    // a page added to the page order of a table: tableID, position in the page order, pageID
+    static final byte RECORD_PAGE_INSERT = 8;
+
+    /**
+     * records of one entry, built up before the entry is appended
+     */
+    static class Entry {
+        private final byte kind;
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final DataOutputStream out = new DataOutputStream(bytes);
+
+        Entry(byte kind) {
+            this.kind = kind;
+        }
+
+        void page(int tableID, int pageID, ByteBuffer page) throws IOException {
+            out.writeByte(RECORD_PAGE);
+            writePage(tableID, pageID, page);
+        }
+
+        /**
+         * @param page  contents of the page before the statement, null if the page was never written
+         */
+        void undo(int tableID, int pageID, ByteBuffer page) throws IOException {
+            out.writeByte(RECORD_UNDO);
+            writePage(tableID, pageID, page);
+        }
+
+        private void writePage(int tableID, int pageID, ByteBuffer page) throws IOException {
+            out.writeInt(tableID);
+            out.writeInt(pageID);
+            if (page == null) {
+                out.writeInt(-1);
+                return;
+            }
+            byte[] contents = new byte[page.remaining()];
+            page.duplicate().get(contents);
+            out.writeInt(contents.length);
+            out.write(contents);
+        }
+
+        void pageInsert(int tableID, int index, int pageID) throws IOException {
+            out.writeByte(RECORD_PAGE_INSERT);
+            out.writeInt(tableID);
+            out.writeInt(index);
+            out.writeInt(pageID);
+        }
+
+        void table(byte[] definition) throws IOException {
+            out.writeByte(RECORD_TABLE);
+            out.writeInt(definition.length);
+            out.write(definition);
+        }
+
+        void drop(int tableID) throws IOException {
+            out.writeByte(RECORD_DROP);
+            out.writeInt(tableID);
+        }
+
+        void dirtyPage(int tableID, int pageID, long recLSN) throws IOException {
+            out.writeByte(RECORD_DIRTY_PAGE);
+            out.writeInt(tableID);
+            out.writeInt(pageID);
+            out.writeLong(recLSN);
+        }
+
+        boolean isEmpty() {
+            return bytes.size() == 0;
+        }
+    }
+
+    /**
+     * called for every entry read by readEntries
+     */
+    interface EntryReader {
+        /**
+         * @param index     position of the entry in the log, from 0
+         * @param start     LSN the entry starts at, the LSN of the entry before it
+         * @param kind
+         * @param payload   records of the entry, available() is the number of bytes left
+         * @throws IOException
+         */
+        void read(int index, long start, byte kind, DataInputStream payload) throws IOException;
+    }
+
+    private final Path path;
+
+    private final int pageSize;
+
+    // replaced when the front of the log is cut
+    private FileChannel channel;
+
+    private final int groupCommit;
+
+    private final long groupDelayMillis;
+
+    // LSN of the first entry in the file
+    private long baseLSN;
+
+    // LSN after the last entry appended
+    private long endLSN;
+
+    // LSN up to which the log is forced to disk
+    private long syncedLSN;
+
+    // commits appended since the log was last forced
+    private int pendingCommits = 0;
+
+    // System.nanoTime of the oldest pending commit
+    private long oldestPendingNanos;
+
+    private long commits = 0;
+
+    private long forces = 0;
+
+    // forces the log for batched commits, null if every commit forces the log itself
+    private final Thread syncer;
+
+    private boolean running = true;
+
+    /**
+     * opens the log of a database, creating it if needed, entries are appended after those already in it
+     * @param dbLoc
+     * @param pageSize
+     * @param groupCommit       commits that may wait for the log to be forced, 1 forces the log on every commit
+     * @param groupDelayMillis  longest a commit waits for the log to be forced
+     * @throws IOException
+     */
+    public WriteAheadLog(String dbLoc, int pageSize, int groupCommit, long groupDelayMillis) throws IOException {
+        if (groupCommit < 1) {
+            throw new IllegalArgumentException(String.format("GROUP COMMIT OF %d COMMITS IS LESS THAN 1", groupCommit));
+        }
+        if (groupDelayMillis < 0) {
+            throw new IllegalArgumentException(String.format("GROUP COMMIT DELAY %d IS NEGATIVE", groupDelayMillis));
+        }
+        this.groupCommit = groupCommit;
+        this.groupDelayMillis = groupDelayMillis;
+        this.path = logPath(dbLoc);
+        this.pageSize = pageSize;
+        this.channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                StandardOpenOption.CREATE);
+        if (channel.size() < HEADER_SIZE) {
+            baseLSN = 0;
+            writeHeader(channel, baseLSN, pageSize);
+        } else {
+            ByteBuffer header = ByteBuffer.allocate(Long.BYTES);
+            channel.read(header, 0);
+            header.flip();
+            baseLSN = header.getLong();
+        }
+        endLSN = baseLSN + channel.size() - HEADER_SIZE;
+        syncedLSN = endLSN;
+
+        if (groupCommit > 1) {
+            syncer = new Thread(this::runSyncer, "wal-sync");
+            // never keeps the database running, the log is forced when it is closed
+            syncer.setDaemon(true);
+            syncer.start();
+        } else {
+            syncer = null;
+        }
+    }
+
+    /**
+     * @param dbLoc
+     * @return path of the log file of the database
+     */
+    public static Path logPath(String dbLoc) {
+        return Paths.get(String.format("%s\\wal", dbLoc));
+    }
+
+    private static void writeHeader(FileChannel channel, long baseLSN, int pageSize) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putLong(baseLSN);
+        header.putInt(pageSize);
+        header.flip();
+        while (header.hasRemaining()) {
+            channel.write(header, header.position());
+        }
+    }
+
+    /**
+     * adds an entry to the end of the log, it is not forced to disk
+     * @param entry
+     * @return LSN of the entry
+     * @throws IOException
+     */
+    synchronized long append(Entry entry) throws IOException {
+        entry.out.flush();
+        byte[] payload = entry.bytes.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        ByteBuffer bytebuff = ByteBuffer.allocate(ENTRY_HEADER_SIZE + payload.length);
+        bytebuff.putInt(payload.length);
+        bytebuff.putInt((int) crc.getValue());
+        bytebuff.put(entry.kind);
+        bytebuff.put(payload);
+        bytebuff.flip();
+
+        long position = HEADER_SIZE + (endLSN - baseLSN);
+        while (bytebuff.hasRemaining()) {
+            position += channel.write(bytebuff, position);
+        }
+        endLSN += ENTRY_HEADER_SIZE + payload.length;
+        return endLSN;
+    }
+
+    /**
+     * appends the entry of a statement that ended and forces the log if enough commits are waiting for it,
+     * otherwise the log is forced within the group commit delay
+     * @param entry
+     * @return LSN of the entry
+     * @throws IOException
+     */
+    long commit(Entry entry) throws IOException {
+        long lsn;
+        boolean forceNow;
+        synchronized (this) {
+            lsn = append(entry);
+            commits++;
+            if (pendingCommits++ == 0) {
+                oldestPendingNanos = System.nanoTime();
+                notifyAll();
+            }
+            forceNow = pendingCommits >= groupCommit;
+        }
+        if (forceNow) {
+            force(lsn);
+        }
+        return lsn;
+    }
+
+    /**
+     * makes sure the log is on disk up to an LSN, entries appended since are forced along with it
+     * the log is not locked while it is forced, so commits can be appended meanwhile
+     * @param lsn
+     * @throws IOException
+     */
+    void force(long lsn) throws IOException {
+        long target;
+        int covered;
+        FileChannel forced;
+        synchronized (this) {
+            if (syncedLSN >= lsn) {
+                return;
+            }
+            target = endLSN;
+            covered = pendingCommits;
+            forced = channel;
+        }
+        try {
+            forced.force(false);
+        } catch (ClosedChannelException e) {
+            if (forced == getChannel()) {
+                throw e;
+            }
+            // the front of the log was cut meanwhile, which forced the whole log
+        }
+        synchronized (this) {
+            if (target > syncedLSN) {
+                syncedLSN = target;
+                forces++;
+            }
+            pendingCommits = Math.max(0, pendingCommits - covered);
+            if (pendingCommits > 0) {
+                oldestPendingNanos = System.nanoTime();
+            }
+        }
+    }
+
+    /**
+     * forces pending commits once the oldest has waited the group commit delay
+     */
+    private void runSyncer() {
+        while (true) {
+            synchronized (this) {
+                if (!running) {
+                    return;
+                }
+                try {
+                    if (pendingCommits == 0) {
+                        wait();
+                        continue;
+                    }
+                    long waitMillis = groupDelayMillis - (System.nanoTime() - oldestPendingNanos) / 1_000_000;
+                    if (waitMillis > 0) {
+                        wait(waitMillis);
+                        continue;
+                    }
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+            try {
+                force(getEndLSN());
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    synchronized long getEndLSN() {
+        return endLSN;
+    }
+
+    private synchronized FileChannel getChannel() {
+        return channel;
+    }
+
+    /**
+     * @return bytes of entries in the log
+     */
+    public synchronized long getSize() {
+        return endLSN - baseLSN;
+    }
+
+    public synchronized long getCommits() {
+        return commits;
+    }
+
+    public synchronized long getForces() {
+        return forces;
+    }
+
+    public int getGroupCommit() {
+        return groupCommit;
+    }
+
+    public long getGroupDelayMillis() {
+        return groupDelayMillis;
+    }
+
+    /**
+     * removes every entry, only once the table files and the catalog hold everything the entries do
+     * @throws IOException
+     */
+    synchronized void clear() throws IOException {
+        baseLSN = endLSN;
+        channel.truncate(HEADER_SIZE);
+        writeHeader(channel, baseLSN, pageSize);
+        channel.force(true);
+        syncedLSN = endLSN;
+        pendingCommits = 0;
+    }
+
+    /**
+     * removes the entries before an LSN, only once the table files and the catalog hold everything they do
+     * the entries after it are copied to a new log file that replaces the old one, so a crash leaves either
+     * @param lsn   LSN an entry starts at
+     * @throws IOException
+     */
+    synchronized void cutBefore(long lsn) throws IOException {
+        if (lsn <= baseLSN) {
+            return;
+        }
+        Path cut = Paths.get(path + ".tmp");
+        try (FileChannel out = FileChannel.open(cut, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeHeader(out, lsn, pageSize);
+            long from = HEADER_SIZE + (lsn - baseLSN);
+            long count = endLSN - lsn;
+            long copied = 0;
+            out.position(HEADER_SIZE);
+            while (copied < count) {
+                copied += channel.transferTo(from + copied, count - copied, out);
+            }
+            out.force(true);
+        }
+        channel.close();
+        Files.move(cut, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        baseLSN = lsn;
+        syncedLSN = endLSN;
+        pendingCommits = 0;
+    }
+
+    /**
+     * stops the syncer and forces what is left of the log
+     * @throws IOException
+     */
+    void close() throws IOException {
+        synchronized (this) {
+            running = false;
+            notifyAll();
+        }
+        if (syncer != null) {
+            try {
+                syncer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        force(getEndLSN());
+        channel.close();
+    }
+
+    /**
+     * @param path
+     * @return LSN of the first entry and page size of a log file
+     * @throws IOException
+     */
+    static long[] readHeader(Path path) throws IOException {
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(path))) {
+            return new long[] {in.readLong(), in.readInt()};
+        }
+    }
+
+    /**
+     * reads the entries of a log file in order, stopping at the first one that was not completely written
+     * @param path
+     * @param reader
+     * @return bytes of the complete entries
+     * @throws IOException
+     */
+    static long readEntries(Path path, EntryReader reader) throws IOException {
+        long valid = 0;
+        long start = readHeader(path)[0];
+        try (InputStream file = Files.newInputStream(path);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(file))) {
+            in.skipBytes(HEADER_SIZE);
+            CRC32 crc = new CRC32();
+            for (int index = 0; ; index++) {
+                byte[] payload;
+                byte kind;
+                int checksum;
+                try {
+                    int length = in.readInt();
+                    checksum = in.readInt();
+                    kind = in.readByte();
+                    if (length < 0) {
+                        break;
+                    }
+                    payload = new byte[length];
+                    in.readFully(payload);
+                } catch (EOFException e) {
+                    break; // the database stopped while the entry was being written
+                }
+                crc.reset();
+                crc.update(payload);
+                if ((int) crc.getValue() != checksum) {
+                    break;
+                }
+                reader.read(index, start + valid, kind, new DataInputStream(new ByteArrayInputStream(payload)));
+                valid += ENTRY_HEADER_SIZE + payload.length;
+            }
+        }
+        return valid;
+    }
+
+    /**
+     * removes every entry of a log file that is not open
+     * @param path
+     * @param baseLSN   LSN the next entry starts from
+     * @param pageSize
+     * @throws IOException
+     */
+    static void clear(Path path, long baseLSN, int pageSize) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.truncate(HEADER_SIZE);
+            writeHeader(channel, baseLSN, pageSize);
+            channel.force(true);
+        }
+    }
+}
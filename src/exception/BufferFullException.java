@@ -0,0 +1,18 @@
+package exception;
+
+/**
+ * A class for throwing BufferFullException exceptions given a message
+ * occurs when the page buffer needs a free frame but every buffered page is pinned, or the page it would free
+ * could not be written.
+ */
+public class BufferFullException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    public BufferFullException(String message) {
+        super(message);
+    }
+
+    public BufferFullException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
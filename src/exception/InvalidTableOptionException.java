@@ -0,0 +1,13 @@
+package exception;
+
+/**
+ * A class for throwing InvalidTableOptionException exceptions given a message
+ * occurs when a create table statement has an unknown table option or one the database can not store.
+ */
+public class InvalidTableOptionException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    public InvalidTableOptionException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,13 @@
+package exception;
+
+/**
+ * A class for throwing RecordTooLargeException exceptions given a message
+ * occurs when a row takes more bytes than fit in an empty page.
+ */
+public class RecordTooLargeException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    public RecordTooLargeException(String message) {
+        super(message);
+    }
+}
@@ -4,6 +4,7 @@ import database.Catalog;
 import database.Database;
 import database.PageBuffer;
 import database.StorageManager;
+import exception.BufferFullException;
 import queryProcessor.commands.*;
 import queryProcessor.queries.*;
 
@@ -213,12 +214,16 @@ public class CLI {
                 return "update";
             case "delete":
                 return "delete";
+            case "set":
+                return "quota";
         }
         switch (stringCommandList.get(1).toLowerCase()) {
             case "schema":
                 return "schema";
             case "info":
                 return "info";
+            case "stats":
+                return "stats";
         }
         return null;
     }
@@ -238,7 +243,12 @@ public class CLI {
             if (commandSuccess == null) continue; // quit command
             if (commandSuccess == false) continue; // bad command get next
             generateQuery();
-            querySuccess = currentQuery.handleQuery();
+            try {
+                querySuccess = currentQuery.handleQuery();
+            } catch (BufferFullException e) {
+                System.err.println(e);
+                querySuccess = false;
+            }
             if (commandSuccess && querySuccess) System.out.println("SUCCESS");
         }
         sc.close();
@@ -275,6 +285,9 @@ public class CLI {
             case "info":
                 currentCommand = new DisplayInfoCommand(currentStringCommandList);
                 break;
+            case "stats":
+                currentCommand = new DisplayStatsCommand(currentStringCommandList);
+                break;
             case "alter":
                 currentCommand = new AlterTableCommand(currentStringCommandList);
                 break;
@@ -287,6 +300,9 @@ public class CLI {
             case "delete":
                 currentCommand = new DeleteCommand(currentStringCommandList, setOfIndiciesInCurrentStringCommandListWithString);
                 break;
+            case "quota":
+                currentCommand = new SetQuotaCommand(currentStringCommandList);
+                break;
         }
     }
 
@@ -330,6 +346,9 @@ public class CLI {
             case "info":
                 currentQuery = new DisplayInfoQuery((DisplayInfoCommand) currentCommand, database);
                 break;
+            case "stats":
+                currentQuery = new DisplayStatsQuery((DisplayStatsCommand) currentCommand, database);
+                break;
             case "alter":
                 currentQuery = new AlterTableQuery((AlterTableCommand) currentCommand, database);
                 break;
@@ -342,6 +361,9 @@ public class CLI {
             case "delete":
                 currentQuery = new DeleteQuery((DeleteCommand) currentCommand, database);
                 break;
+            case "quota":
+                currentQuery = new SetQuotaQuery((SetQuotaCommand) currentCommand, database);
+                break;
         }
     }
 
@@ -364,6 +386,7 @@ public class CLI {
             // be written and when restarted it will try to read something that is not there
             PageBuffer pagebuff  = manager.getBuffer();
             pagebuff.purgeBuffer();
+            pagebuff.close();
         } catch (IOException e) {
             e.printStackTrace();
         }
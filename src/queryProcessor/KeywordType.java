@@ -29,6 +29,10 @@ public enum KeywordType {
 
     INFO("info"),
 
+    STATS("stats"),
+
+    RESET("reset"),
+
     CHAR("char"),
 
     VARCHAR("varchar"),
@@ -66,7 +70,15 @@ public enum KeywordType {
 
     SET("set"),
 
-    ORDERBY("orderby");
+    ORDERBY("orderby"),
+
+    WITH("with"),
+
+    COMPRESSION("compression"),
+
+    QUOTA("quota"),
+
+    BUFFER("buffer");
 
     private String value;
 
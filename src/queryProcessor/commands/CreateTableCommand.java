@@ -13,10 +13,15 @@ public class CreateTableCommand extends Command {
 
     private int primaryKeyCount;
 
+    private boolean compressed;
+
+    private int bufferQuota;
+
     public CreateTableCommand(ArrayList<String> tokens) {
         super(tokens);
         attributes = new ArrayList<>();
         primaryKeyCount = 0;
+        compressed = false;
     }
 
 
@@ -28,16 +33,19 @@ public class CreateTableCommand extends Command {
      * <attr_name2> <attr_type2>,
      * ....
      * <attr_nameN> <attr_typeN>
-     * );
+     * ) [with <option> ...];
      *
      * <name> is the name of the table. Table names are unique in the system.
      * <attr name> is the name of the attribute. Attribute names are unique within a table.
      * <attr type> is the type of the attribute. These types are outlined above.
      * primarykey is the attribute that is the primary key of the table. The table can have
+     * <option> is compression or quota <pages>, the number of page buffer frames reserved for the table.
      * <p>
      * ex:
      * create table foo( num integer primarykey );
      * create table foo( age char(10), num integer primarykey );
+     * create table foo( num integer primarykey, name varchar(20) ) with compression;
+     * create table foo( num integer primarykey ) with compression, quota 16;
      */
     public Boolean parseCommand() {
         tokens.remove(0);
@@ -50,18 +58,50 @@ public class CreateTableCommand extends Command {
             attributes.add(extractAttribute());
         }
         try {
+            extractTableOptions();
             checkDuplicateAttributeNames();
             checkPrimaryKey();
             checkInvalidDataTypeWhenCreatingTableException();
             return true;
         } catch (NoTableAttributesDefinedException | NoPrimaryKeyDefinedException | ExtraPrimaryKeyDefinedException
-                 | DuplicateAttributeNameException | InvalidDataTypeWhenCreatingTableException e) {
+                 | DuplicateAttributeNameException | InvalidDataTypeWhenCreatingTableException
+                 | InvalidTableOptionException e) {
             System.err.println(e);
             return false;
         }
     }
 
 
+    /**
+     * reads the options after the attribute list, [with compression] [quota <pages>], separated by spaces or commas
+     */
+    private void extractTableOptions() {
+        if (tokens.get(0).equals(")")) {
+            tokens.remove(0);
+        }
+        if (tokens.get(0).equals(";")) {
+            return;
+        }
+        if (!tokens.get(0).equals(KeywordType.WITH.toString()) || tokens.get(1).equals(";")) {
+            throw new InvalidTableOptionException(String.format("ERROR: UNKNOWN TABLE OPTION %s", tokens.get(0)));
+        }
+        tokens.remove(0);
+        while (!tokens.get(0).equals(";")) {
+            String option = tokens.remove(0);
+            if (option.equals(",")) {
+                continue;
+            }
+            if (option.equals(KeywordType.COMPRESSION.toString())) {
+                compressed = true;
+            } else if (option.equals(KeywordType.QUOTA.toString()) && !tokens.get(0).equals(";")) {
+                bufferQuota = SetQuotaCommand.parsePages(tokens.remove(0));
+            } else {
+                throw new InvalidTableOptionException(String.format("ERROR: UNKNOWN TABLE OPTION %s", option));
+            }
+        }
+    }
+
+
     private void checkPrimaryKey() {
         for (Attribute attribute : attributes) {
             if (attribute.isPrimaryKey() == 1) {
@@ -162,4 +202,14 @@ public class CreateTableCommand extends Command {
         return attributes;
     }
 
+
+    public boolean isCompressed() {
+        return compressed;
+    }
+
+
+    public int getBufferQuota() {
+        return bufferQuota;
+    }
+
 }
\ No newline at end of file
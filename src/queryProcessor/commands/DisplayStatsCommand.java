@@ -0,0 +1,40 @@
+package queryProcessor.commands;
+
+import queryProcessor.KeywordType;
+
+import java.util.ArrayList;
+
+public class DisplayStatsCommand extends Command {
+
+    private boolean reset;
+
+    public DisplayStatsCommand(ArrayList<String> tokens) {
+        super(tokens);
+    }
+
+
+    /**
+     * Parses string from user input into form
+     * <p>
+     * display stats [reset];
+     */
+    public Boolean parseCommand() {
+        tokens.remove(0);
+        tokens.remove(0);
+        if (tokens.get(0).equals(KeywordType.RESET.toString())) {
+            reset = true;
+            tokens.remove(0);
+        }
+        if (!tokens.get(0).equals(";")) {
+            System.err.println(String.format("ERROR: UNEXPECTED %s AFTER DISPLAY STATS", tokens.get(0)));
+            return false;
+        }
+        return true;
+    }
+
+
+    public boolean isReset() {
+        return reset;
+    }
+
+}
@@ -0,0 +1,83 @@
+package queryProcessor.commands;
+
+import exception.InvalidTableOptionException;
+import queryProcessor.KeywordType;
+
+import java.util.ArrayList;
+
+public class SetQuotaCommand extends Command {
+
+    private int pages;
+
+    public SetQuotaCommand(ArrayList<String> tokens) {
+        super(tokens);
+    }
+
+
+    /**
+     * Parses string from user input into form
+     * <p>
+     * set buffer quota <name> <pages>;
+     *
+     * <name> is the name of the table.
+     * <pages> is the number of page buffer frames reserved for the table, 0 removes the quota.
+     */
+    public Boolean parseCommand() {
+        // every statement starting with set ends up here
+        if (tokens.size() < 3 || !tokens.get(1).equals(KeywordType.BUFFER.toString())
+                || !tokens.get(2).equals(KeywordType.QUOTA.toString())) {
+            System.err.println("ERROR: UNKNOWN SET COMMAND, EXPECTED SET BUFFER QUOTA <NAME> <PAGES>");
+            return false;
+        }
+        // set buffer quota <name> <pages> ;
+        if (tokens.size() < 6 || tokens.get(3).equals(";") || tokens.get(4).equals(";")) {
+            System.err.println("ERROR: SET BUFFER QUOTA NEEDS A TABLE NAME AND A NUMBER OF PAGES");
+            return false;
+        }
+        if (!tokens.get(5).equals(";") || tokens.size() > 6) {
+            System.err.println(String.format("ERROR: UNEXPECTED %s AFTER SET BUFFER QUOTA", tokens.get(5)));
+            return false;
+        }
+        // exception is not handled here if table dne need to check db
+        tokens.remove(0);
+        tokens.remove(0);
+        tokens.remove(0);
+        extractName();
+        try {
+            pages = parsePages(tokens.remove(0));
+            return true;
+        } catch (InvalidTableOptionException e) {
+            System.err.println(e);
+            return false;
+        }
+    }
+
+
+    /**
+     * reads a number of buffer frames
+     * @param str
+     * @throws InvalidTableOptionException if str is not a number of frames
+     */
+    static int parsePages(String str) {
+        try {
+            int pages = Integer.parseInt(str);
+            if (pages >= 0) {
+                return pages;
+            }
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+        throw new InvalidTableOptionException(String.format("ERROR: BUFFER QUOTA %s IS NOT A NUMBER OF PAGES", str));
+    }
+
+
+    public String getName() {
+        return name;
+    }
+
+
+    public int getPages() {
+        return pages;
+    }
+
+}
@@ -15,16 +15,22 @@ import java.util.ArrayList;
  * <attr_name2> <attr_type2>,
  * ....
  * <attr_nameN> <attr_typeN>
- * );
+ * ) [with <option> ...];
  *
  * <name> is the name of the table. Table names are unique in the system.
  * <attr name> is the name of the attribute. Attribute names are unique within a table.
  * <attr type> is the type of the attribute. These types are outlined above.
  * primarykey is the attribute that is the primary key of the table. The table can have
+ * <option> is compression or quota <pages>, the number of page buffer frames reserved for the table.
  * <p>
  * ex:
  * create table foo( num integer primarykey );
  * create table foo( age char(10), num integer primarykey );
+ * create table foo( num integer primarykey, name varchar(20) ) with compression;
+ * create table foo( num integer primarykey ) with compression, quota 16;
+ * <p>
+ * The pages of a table created with compression are compressed before they are written to disk.
+ * A table created with a quota keeps that many page buffer frames for itself, see SetQuotaQuery.
  * <p>
  * This schema will be added to
  * the catalog. This schema will be used by the system to store/access/update/delete data in
@@ -39,11 +45,17 @@ public class CreateTableQuery extends Query {
 
     private String name;
 
+    private boolean compressed;
+
+    private int bufferQuota;
+
 
     public CreateTableQuery(CreateTableCommand command, Database database) {
         super(database);
         attributes = command.getAttributes();
         name = command.getName();
+        compressed = command.isCompressed();
+        bufferQuota = command.getBufferQuota();
     }
 
 
@@ -57,6 +69,16 @@ public class CreateTableQuery extends Query {
     }
 
 
+    public boolean isCompressed() {
+        return compressed;
+    }
+
+
+    public int getBufferQuota() {
+        return bufferQuota;
+    }
+
+
     public boolean handleQuery() {
         return this.database.createTable(this); // return true if success
     }
@@ -0,0 +1,40 @@
+package queryProcessor.queries;
+
+import database.Database;
+import queryProcessor.commands.DisplayStatsCommand;
+
+
+/**
+ * Handles a Query in the form of
+ * <p>
+ * display stats [reset];
+ * <p>
+ * This command will display how the page buffer has been used since its counters were last reset. It will
+ * display:
+ * <p>
+ * pages in use and dirty pages
+ * hit ratio, hits and misses
+ * evictions, write backs, bytes read and bytes written
+ * the pages buffered and the counters of each table
+ * <p>
+ * With reset the counters are set back to 0 after they are displayed.
+ */
+public class DisplayStatsQuery extends Query {
+
+    private boolean reset;
+
+    public DisplayStatsQuery(DisplayStatsCommand command, Database database) {
+        super(database);
+        reset = command.isReset();
+    }
+
+
+    public boolean isReset() {
+        return reset;
+    }
+
+
+    public boolean handleQuery() {
+        return this.database.displayStats(reset); // return true if success
+    }
+}
@@ -0,0 +1,45 @@
+package queryProcessor.queries;
+
+import database.Database;
+import queryProcessor.commands.SetQuotaCommand;
+
+
+/**
+ * Handles a Query in the form of
+ * <p>
+ * set buffer quota <name> <pages>;
+ *
+ * <name> is the name of the table.
+ * <pages> is the number of page buffer frames reserved for the table, 0 removes the quota.
+ * <p>
+ * The table keeps up to <pages> of its pages in the buffer however much other tables are read, and once the
+ * buffer is full it replaces its own pages instead of those of other tables. Frames the table is not using are
+ * lent to other tables until it needs them. The quota is saved with the table.
+ */
+public class SetQuotaQuery extends Query {
+
+    private String name;
+
+    private int pages;
+
+    public SetQuotaQuery(SetQuotaCommand command, Database database) {
+        super(database);
+        name = command.getName();
+        pages = command.getPages();
+    }
+
+
+    public String getName() {
+        return name;
+    }
+
+
+    public int getPages() {
+        return pages;
+    }
+
+
+    public boolean handleQuery() {
+        return this.database.setBufferQuota(this); // return true if success
+    }
+}
@@ -2,6 +2,7 @@ package queryProcessor.whereTree;
 
 import java.util.ArrayList;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Queue;
 import java.util.Stack;
 
@@ -161,7 +162,7 @@ public class WhereTree {
      * foo.x foo.y bar.x
      * [ "a", 1, "foo"] is an example of a row
      */
-    public boolean includeRow(ArrayList<Object> row, ArrayList<ArrayList<String>> tableAndColumns) {
+    public boolean includeRow(List<Object> row, ArrayList<ArrayList<String>> tableAndColumns) {
         boolean isEdgeCaseOneNodeTree = false;
         if(root.getLeft() == null && root.getRight() == null){
             isEdgeCaseOneNodeTree = true;
@@ -176,7 +177,7 @@ public class WhereTree {
      * This function is for evaluating the tree in INORDER tree traversal. The boolean result is stored in
      * currentTreeEvaluationForGivenExpression
      */
-    private Node evaluateTree(Node rootNode, ArrayList<Object> row, ArrayList<ArrayList<String>> tableAndColumns, boolean isEdgeCaseOneNodeTree) {
+    private Node evaluateTree(Node rootNode, List<Object> row, ArrayList<ArrayList<String>> tableAndColumns, boolean isEdgeCaseOneNodeTree) {
         if (rootNode == null) {
             return null;
         } else if (isEdgeCaseOneNodeTree) {
@@ -207,7 +208,7 @@ public class WhereTree {
     }
 
 
-    private void checkExpressionIsTrueForGivenRow(ArrayList<Object> row, ArrayList<ArrayList<String>>
+    private void checkExpressionIsTrueForGivenRow(List<Object> row, ArrayList<ArrayList<String>>
             tableAndColumns, Node node) {
         /**
          * Possibilies: